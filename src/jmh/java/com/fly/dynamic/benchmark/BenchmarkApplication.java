@@ -0,0 +1,33 @@
+package com.fly.dynamic.benchmark;
+
+import com.fly.dynamic.config.EnableDynamicRule;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 基准测试使用的应用，内嵌H2数据库，不启动web服务
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/6
+ */
+@SpringBootApplication
+@EnableDynamicRule
+public class BenchmarkApplication {
+
+    /**
+     * 启动应用
+     *
+     * @return context
+     */
+    public static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "logging.level.root=WARN")
+                .run();
+    }
+}
@@ -0,0 +1,45 @@
+package com.fly.dynamic.benchmark;
+
+import com.fly.dynamic.service.RuleCompiler;
+import org.kie.api.runtime.KieContainer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DRL编译耗时，对应规则首次加载和修改后的重新编译
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/6
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class CompileBenchmark {
+
+    @Param({Fixtures.SMALL, Fixtures.MEDIUM, Fixtures.LARGE})
+    public String size;
+
+    private String drl;
+
+    private final RuleCompiler compiler = new RuleCompiler();
+
+
+    @Setup
+    public void setup() {
+        drl = Fixtures.drl(size);
+    }
+
+
+    @Benchmark
+    public void compile(Blackhole blackhole) {
+        KieContainer kieContainer = compiler.compileDrl(drl);
+        blackhole.consume(kieContainer.getKieBase());
+        kieContainer.dispose();
+    }
+}
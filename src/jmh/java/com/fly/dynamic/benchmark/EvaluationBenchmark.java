@@ -0,0 +1,109 @@
+package com.fly.dynamic.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fly.dynamic.entity.Rule;
+import com.fly.dynamic.runtime.FactBinding;
+import com.fly.dynamic.runtime.RuleContainer;
+import com.fly.dynamic.service.DynamicService;
+import com.fly.dynamic.service.RuleService;
+import org.kie.api.runtime.KieSession;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 规则执行热点：
+ * newSession    创建session并设置global、插入日志和spring容器，同{@link RuleService#newSession(RuleContainer)}
+ * convertParam  参数转换为规则中声明的事实类型，同DynamicService中的转换逻辑
+ * handle        完整执行一次规则，同{@link DynamicService#handleById(Long, Map)}
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/6
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EvaluationBenchmark {
+
+    @Param({Fixtures.SMALL, Fixtures.MEDIUM, Fixtures.LARGE})
+    public String size;
+
+    private ConfigurableApplicationContext context;
+
+    private RuleService ruleService;
+
+    private DynamicService dynamicService;
+
+    private ObjectMapper objectMapper;
+
+    private Long id;
+
+    private RuleContainer container;
+
+    private Map<String, Object> param;
+
+
+    @Setup
+    public void setup() throws InterruptedException {
+        context = BenchmarkApplication.start();
+        ruleService = context.getBean(RuleService.class);
+        dynamicService = context.getBean(DynamicService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        Rule rule = new Rule();
+        rule.setName("bench_" + size);
+        rule.setDescription("benchmark " + size);
+        rule.setRuleText(Fixtures.drl(size));
+        ruleService.save(rule);
+
+        id = rule.getId();
+        param = Fixtures.param();
+
+        //等待保存后的后台编译完成，基准中只使用缓存中的容器
+        while (!ruleService.getLoadedContainers().containsKey(id)) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        container = ruleService.acquireById(id);
+        container.release();
+    }
+
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+
+    @Benchmark
+    public void newSession(Blackhole blackhole) {
+        RuleContainer acquired = ruleService.acquireById(id);
+        try {
+            KieSession session = ruleService.newSession(acquired);
+            blackhole.consume(session.getFactCount());
+            session.dispose();
+        } finally {
+            acquired.release();
+        }
+    }
+
+
+    @Benchmark
+    public void convertParam(Blackhole blackhole) {
+        for (FactBinding binding : container.getFactBindings()) {
+            blackhole.consume(objectMapper.convertValue(param, binding.getFactClass()));
+        }
+    }
+
+
+    @Benchmark
+    public Object handle() {
+        return dynamicService.handleById(id, param);
+    }
+}
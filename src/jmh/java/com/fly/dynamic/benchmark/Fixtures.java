@@ -0,0 +1,99 @@
+package com.fly.dynamic.benchmark;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基准测试用的规则和参数
+ * <p>
+ * small：1个声明类型、2条规则
+ * medium：1个声明类型、1个函数、7条规则，含salience和modify
+ * large：1个声明类型、按金额分档的200条规则
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/6
+ */
+@UtilityClass
+public class Fixtures {
+
+    public static final String SMALL = "small";
+    public static final String MEDIUM = "medium";
+    public static final String LARGE = "large";
+
+    private static final int LARGE_TIERS = 200;
+
+
+    /**
+     * 获取规则文本
+     *
+     * @param size  small、medium或large
+     * @return      规则文本
+     */
+    public static String drl(String size) {
+        if (LARGE.equals(size)) {
+            return large();
+        }
+
+        try (InputStream in = new ClassPathResource("drl/" + size + ".drl").getInputStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * 请求参数，覆盖各规则的主要分支
+     *
+     * @return 参数
+     */
+    public static Map<String, Object> param() {
+        Map<String, Object> param = new HashMap<>();
+        param.put("userId", 10001L);
+        param.put("amount", 1288.5);
+        param.put("channel", "app");
+        param.put("city", "lhasa");
+        param.put("vip", true);
+        param.put("itemCount", 12);
+        param.put("level", "gold");
+        return param;
+    }
+
+
+    private static String large() {
+        StringBuilder drl = new StringBuilder()
+                .append("package com.fly.rule.large\n\n")
+                .append("import com.fly.dynamic.entity.RuleResult\n\n")
+                .append("declare Order\n")
+                .append("    userId : Long\n")
+                .append("    amount : Double\n")
+                .append("    channel : String\n")
+                .append("    city : String\n")
+                .append("    vip : Boolean\n")
+                .append("    itemCount : Integer\n")
+                .append("    level : String\n")
+                .append("end\n\n");
+
+        for (int i = 0; i < LARGE_TIERS; i++) {
+            drl.append("rule \"tier ").append(i).append("\"\n")
+                    .append("    when\n")
+                    .append("        $order : Order(amount >= ").append(i * 10).append(", amount < ").append((i + 1) * 10)
+                    .append(", vip == ").append(i % 2 == 0).append(")\n")
+                    .append("        $result : RuleResult()\n")
+                    .append("    then\n")
+                    .append("        $result.setData(\"tier ").append(i).append("\");\n")
+                    .append("end\n\n");
+        }
+
+        return drl.toString();
+    }
+}
@@ -0,0 +1,295 @@
+package com.fly.dynamic.loadtest;
+
+import com.fly.dynamic.entity.Rule;
+import com.fly.dynamic.entity.RuleResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 端到端压测：启动应用，通过HTTP写入N个规则，
+ * 按指定并发调用/rule/dynamic/{id}和/rule/dynamic/name/{name}，同时定时修改规则，
+ * 覆盖规则容器替换、在途请求结束后释放旧容器的路径，最后输出各接口的延迟分位数和错误数
+ * <p>
+ * 参数（系统属性）：
+ * loadtest.rules           规则数量，默认100
+ * loadtest.concurrency     并发数，默认32
+ * loadtest.warmup          预热时间（秒），默认10
+ * loadtest.duration        压测时间（秒），默认60
+ * loadtest.update-interval 修改规则的间隔（毫秒），0表示不修改，默认100
+ * loadtest.server-threads  tomcat最大线程数，默认200
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/6
+ */
+@Slf4j
+public class LoadTest {
+
+    private static final String BY_ID = "dynamic.id";
+    private static final String BY_NAME = "dynamic.name";
+    private static final String SAVE = "rule.save";
+
+    private final int rules;
+    private final int concurrency;
+    private final Duration warmup;
+    private final Duration duration;
+    private final long updateInterval;
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    private final String baseUrl;
+
+    private final List<Rule> seeded = new ArrayList<>();
+
+    private volatile MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final Map<String, Map<String, LongAdder>> errors = new ConcurrentHashMap<>();
+
+    private LoadTest(int port) {
+        this.rules = intProperty("loadtest.rules", 100);
+        this.concurrency = intProperty("loadtest.concurrency", 32);
+        this.warmup = Duration.ofSeconds(intProperty("loadtest.warmup", 10));
+        this.duration = Duration.ofSeconds(intProperty("loadtest.duration", 60));
+        this.updateInterval = intProperty("loadtest.update-interval", 100);
+        this.baseUrl = "http://localhost:" + port;
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        //HttpURLConnection默认每个主机只保持5个长连接
+        System.setProperty("http.maxConnections", String.valueOf(intProperty("loadtest.concurrency", 32)));
+
+        ConfigurableApplicationContext context = LoadTestApplication.start();
+        try {
+            LoadTest test = new LoadTest(LoadTestApplication.port(context));
+            test.seed();
+            test.run();
+        } finally {
+            context.close();
+        }
+    }
+
+
+    static int intProperty(String name, int defaultValue) {
+        return Integer.getInteger(name, defaultValue);
+    }
+
+
+    /**
+     * 通过接口写入规则
+     */
+    private void seed() {
+        for (int i = 0; i < rules; i++) {
+            Rule rule = new Rule();
+            rule.setName("load_" + i);
+            rule.setDescription("load test " + i);
+            rule.setRuleText(ruleText(i, 0));
+
+            RuleResult result = restTemplate.postForObject(baseUrl + "/rule", rule, RuleResult.class);
+            if (result == null || !Integer.valueOf(0).equals(result.getCode())) {
+                throw new IllegalStateException("seed rule error: " + result);
+            }
+
+            rule.setId(((Number) result.getData()).longValue());
+            seeded.add(rule);
+        }
+
+        log.warn("seeded {} rules", rules);
+    }
+
+
+    /**
+     * 预热后清空统计，再正式压测
+     *
+     * @throws InterruptedException 中断
+     */
+    private void run() throws InterruptedException {
+        drive(warmup);
+        registry = new SimpleMeterRegistry();
+        errors.clear();
+
+        long start = System.nanoTime();
+        drive(duration);
+        report(Duration.ofNanos(System.nanoTime() - start));
+    }
+
+
+    private void drive(Duration time) throws InterruptedException {
+        long deadline = System.nanoTime() + time.toNanos();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency + 1);
+
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    Rule rule = seeded.get(random.nextInt(seeded.size()));
+                    if (random.nextBoolean()) {
+                        call(BY_ID, baseUrl + "/rule/dynamic/" + rule.getId(), param(random));
+                    } else {
+                        call(BY_NAME, baseUrl + "/rule/dynamic/name/" + rule.getName(), param(random));
+                    }
+                }
+            });
+        }
+
+        if (updateInterval > 0) {
+            workers.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int revision = 0;
+                while (System.nanoTime() < deadline) {
+                    int index = random.nextInt(seeded.size());
+                    Rule rule = seeded.get(index);
+
+                    Rule update = new Rule();
+                    update.setId(rule.getId());
+                    update.setName(rule.getName());
+                    update.setDescription(rule.getDescription());
+                    update.setRuleText(ruleText(index, ++revision));
+                    call(SAVE, baseUrl + "/rule", update);
+
+                    sleep(updateInterval);
+                }
+            });
+        }
+
+        workers.shutdown();
+        workers.awaitTermination(time.toMillis() + TimeUnit.MINUTES.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * 调用接口并记录耗时，HTTP异常和非0结果码计为错误
+     *
+     * @param operation 接口
+     * @param url       url
+     * @param body      请求体
+     */
+    private void call(String operation, String url, Object body) {
+        Timer timer = Timer.builder(operation)
+                .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                .register(registry);
+
+        long start = System.nanoTime();
+        String error = null;
+        try {
+            RuleResult result = restTemplate.postForObject(url, body, RuleResult.class);
+            if (result == null || !Integer.valueOf(0).equals(result.getCode())) {
+                error = result == null ? "empty" : "code " + result.getCode() + ": " + result.getMessage();
+            }
+        } catch (RuntimeException e) {
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        if (error != null) {
+            errors.computeIfAbsent(operation, k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(error, k -> new LongAdder())
+                    .increment();
+        }
+    }
+
+
+    private void report(Duration elapsed) {
+        StringBuilder out = new StringBuilder("\n")
+                .append(String.format("rules: %d, concurrency: %d, duration: %ds, update interval: %dms%n",
+                        rules, concurrency, elapsed.getSeconds(), updateInterval))
+                .append(String.format("%-14s %10s %10s %10s %10s %10s %10s %10s %10s%n",
+                        "operation", "count", "errors", "ops/s", "p50(ms)", "p90(ms)", "p99(ms)", "p999(ms)", "max(ms)"));
+
+        for (String operation : Arrays.asList(BY_ID, BY_NAME, SAVE)) {
+            Timer timer = registry.find(operation).timer();
+            if (timer == null) {
+                continue;
+            }
+
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            Map<Double, Double> percentiles = new HashMap<>();
+            for (ValueAtPercentile value : snapshot.percentileValues()) {
+                percentiles.put(value.percentile(), value.value(TimeUnit.MILLISECONDS));
+            }
+
+            long errorCount = errors.getOrDefault(operation, Collections.emptyMap()).values().stream()
+                    .mapToLong(LongAdder::sum)
+                    .sum();
+
+            out.append(String.format("%-14s %10d %10d %10.1f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    operation,
+                    snapshot.count(),
+                    errorCount,
+                    snapshot.count() * 1000.0 / elapsed.toMillis(),
+                    percentiles.getOrDefault(0.5, 0.0),
+                    percentiles.getOrDefault(0.9, 0.0),
+                    percentiles.getOrDefault(0.99, 0.0),
+                    percentiles.getOrDefault(0.999, 0.0),
+                    snapshot.max(TimeUnit.MILLISECONDS)));
+        }
+
+        errors.forEach((operation, messages) -> messages.forEach((message, count) ->
+                out.append(String.format("error %-14s %8d  %s%n", operation, count.sum(), message))));
+
+        System.out.println(out);
+    }
+
+
+    /**
+     * 规则文本，revision不同时规则内容不同，每次修改都会重新编译
+     *
+     * @param index     规则序号
+     * @param revision  修改次数
+     * @return          规则文本
+     */
+    private static String ruleText(int index, int revision) {
+        return "package com.fly.rule.load" + index + "\n\n" +
+                "import com.fly.dynamic.entity.RuleResult\n\n" +
+                "declare Order\n" +
+                "    userId : Long\n" +
+                "    amount : Double\n" +
+                "    vip : Boolean\n" +
+                "end\n\n" +
+                "// revision " + revision + "\n" +
+                "rule \"discount\"\n" +
+                "    when\n" +
+                "        $order : Order(amount >= " + (index % 10) * 100 + ")\n" +
+                "        $result : RuleResult()\n" +
+                "    then\n" +
+                "        $result.setData($order.getAmount() * ($order.getVip() ? 0.9 : 0.95));\n" +
+                "end\n\n" +
+                "rule \"no discount\"\n" +
+                "    when\n" +
+                "        $order : Order(amount < " + (index % 10) * 100 + ")\n" +
+                "        $result : RuleResult()\n" +
+                "    then\n" +
+                "        $result.setData($order.getAmount());\n" +
+                "end\n";
+    }
+
+
+    private static Map<String, Object> param(ThreadLocalRandom random) {
+        Map<String, Object> param = new HashMap<>();
+        param.put("userId", random.nextLong(1, 100000));
+        param.put("amount", (double) random.nextInt(0, 2000));
+        param.put("vip", random.nextBoolean());
+        return param;
+    }
+
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.fly.dynamic.loadtest;
+
+import com.fly.dynamic.config.EnableDynamicRule;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 压测使用的应用，内嵌H2数据库，随机端口启动web服务
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/6
+ */
+@SpringBootApplication
+@EnableDynamicRule
+public class LoadTestApplication {
+
+    /**
+     * 启动应用
+     *
+     * @return context
+     */
+    public static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(LoadTestApplication.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.threads.max=" + LoadTest.intProperty("loadtest.server-threads", 200),
+                        "spring.datasource.url=jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "logging.level.root=WARN")
+                .run();
+    }
+
+
+    /**
+     * 实际监听端口
+     *
+     * @param context   context
+     * @return          端口
+     */
+    public static int port(ConfigurableApplicationContext context) {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+}
@@ -5,6 +5,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.fly.dynamic.common.RuleErrorMessage.ASYNC_FULL_ERROR;
+
 /**
  * @author guoxiang
  * @version 1.0.0
@@ -14,6 +20,33 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 @Slf4j
 public class RuleErrorHandler {
 
+    @ExceptionHandler(RejectedExecutionException.class)
+    public RuleResult handleRejected(RejectedExecutionException e) {
+        log.warn("- rule async executor rejected: {}", e.getMessage());
+        return RuleResult.fail(RuleResult.REJECTED, ASYNC_FULL_ERROR);
+    }
+
+    /**
+     * 异步执行的异常被包装，取出原始异常后按同步执行的方式处理，保证同步和异步接口返回一致
+     */
+    @ExceptionHandler({CompletionException.class, ExecutionException.class})
+    public RuleResult handleWrapped(Exception e) {
+        Throwable cause = e;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+
+        if (cause instanceof RejectedExecutionException) {
+            return handleRejected((RejectedExecutionException) cause);
+        }
+        if (cause instanceof Exception) {
+            return handleException((Exception) cause);
+        }
+
+        log.error("- rule exception", cause);
+        return RuleResult.fail(cause.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public RuleResult handleException(Exception e) {
         log.error("- rule exception", e);
@@ -14,4 +14,12 @@ public class RuleErrorMessage {
     public static final String NAME_ERROR = "规则名称错误：4-10位数字字母下划线";
     public static final String NAME_EXIST_ERROR = "规则名称已存在！";
     public static final String CANNOT_FIND_RULE_ERROR = "规则不存在！";
+    public static final String PARAM_ERROR = "参数格式错误！";
+    public static final String BATCH_SIZE_ERROR = "批量参数数量超过上限！";
+    public static final String PROFILE_RATE_ERROR = "采样率需在0到1之间！";
+    public static final String TIMEOUT_ERROR = "规则执行超时！";
+    public static final String FIRE_LIMIT_ERROR = "规则触发次数超过上限！";
+    public static final String BULKHEAD_FULL_ERROR = "规则繁忙，请稍后重试！";
+    public static final String ASYNC_FULL_ERROR = "异步执行队列已满，请稍后重试！";
+    public static final String RULE_LINT_ERROR = "规则复杂度超过上限！";
 }
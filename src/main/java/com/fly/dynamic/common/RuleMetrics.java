@@ -0,0 +1,243 @@
+package com.fly.dynamic.common;
+
+import com.fly.dynamic.runtime.ExecutionMode;
+import com.fly.dynamic.runtime.RuleBulkhead;
+import com.fly.dynamic.runtime.RuleContainer;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 规则执行、编译和缓存指标，没有MeterRegistry时使用全局registry
+ * <p>
+ * dynamic.rule.execution   执行耗时，tag：rule、mode、outcome
+ * dynamic.rule.fired       每次执行触发的规则数，tag：rule
+ * dynamic.rule.conversion  参数转换耗时，tag：rule
+ * dynamic.rule.compile     编译耗时，tag：rule、source、outcome
+ * dynamic.rule.footprint   编译后规则容器的预估内存，tag：rule
+ * dynamic.rule.cache.footprint 已加载规则容器的预估内存总量
+ * dynamic.rule.bulkhead.*  并发隔离的上限、执行数、排队数和拒绝数，tag：rule
+ * cache.*                  缓存命中、未命中和淘汰，tag：cache
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/5
+ */
+@Component
+public class RuleMetrics {
+
+    public static final String TAG_RULE = "rule";
+    public static final String TAG_MODE = "mode";
+    public static final String TAG_OUTCOME = "outcome";
+    public static final String TAG_SOURCE = "source";
+
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+    public static final String TIMEOUT = "timeout";
+    public static final String FIRE_LIMIT = "fire_limit";
+
+    public static final String SOURCE_DRL = "drl";
+    public static final String SOURCE_ARTIFACT = "artifact";
+    public static final String SOURCE_PACKED = "packed";
+    public static final String SOURCE_EXECUTABLE_MODEL = "executable_model";
+
+    private final MeterRegistry registry;
+
+    public RuleMetrics(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry.getIfUnique(() -> Metrics.globalRegistry);
+    }
+
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+
+    /**
+     * 开始计时
+     *
+     * @return sample
+     */
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+
+    /**
+     * 记录规则执行耗时
+     *
+     * @param container 规则容器
+     * @param mode      执行模式
+     * @param sample    开始计时
+     * @param outcome   结果
+     */
+    public void recordExecution(RuleContainer container, ExecutionMode mode, Timer.Sample sample, String outcome) {
+        Timer timer = Timer.builder("dynamic.rule.execution")
+                .description("dynamic rule execution latency")
+                .tag(TAG_RULE, ruleTag(container))
+                .tag(TAG_MODE, mode.name())
+                .tag(TAG_OUTCOME, outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+
+        sample.stop(timer);
+    }
+
+
+    /**
+     * 记录单次执行触发的规则数
+     *
+     * @param container 规则容器
+     * @param fired     触发数
+     */
+    public void recordFired(RuleContainer container, int fired) {
+        DistributionSummary.builder("dynamic.rule.fired")
+                .description("rules fired per dynamic rule execution")
+                .tag(TAG_RULE, ruleTag(container))
+                .register(registry)
+                .record(fired);
+    }
+
+
+    /**
+     * 记录参数转换耗时
+     *
+     * @param container 规则容器
+     * @param supplier  转换
+     * @param <T>       结果类型
+     * @return          转换结果
+     */
+    public <T> T recordConversion(RuleContainer container, Supplier<T> supplier) {
+        return Timer.builder("dynamic.rule.conversion")
+                .description("dynamic rule parameter conversion latency")
+                .tag(TAG_RULE, ruleTag(container))
+                .register(registry)
+                .record(supplier);
+    }
+
+
+    /**
+     * 记录规则容器的预估内存
+     *
+     * @param container 规则容器
+     */
+    public void recordFootprint(RuleContainer container) {
+        DistributionSummary.builder("dynamic.rule.footprint")
+                .description("estimated dynamic rule container footprint")
+                .baseUnit("bytes")
+                .tag(TAG_RULE, ruleTag(container))
+                .register(registry)
+                .record(container.getFootprint());
+    }
+
+
+    /**
+     * 监控已加载规则容器的预估内存总量
+     *
+     * @param total     总量
+     */
+    public void monitorFootprint(Supplier<Number> total) {
+        Gauge.builder("dynamic.rule.cache.footprint", total)
+                .description("estimated footprint of loaded dynamic rule containers")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+
+    /**
+     * 记录规则编译耗时
+     *
+     * @param name      规则名称
+     * @param source    来源：drl编译或编译产物缓存
+     * @param nanos     耗时
+     * @param outcome   结果
+     */
+    public void recordCompile(String name, String source, long nanos, String outcome) {
+        Timer.builder("dynamic.rule.compile")
+                .description("dynamic rule compile latency")
+                .tag(TAG_RULE, String.valueOf(name))
+                .tag(TAG_SOURCE, source)
+                .tag(TAG_OUTCOME, outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * 监控规则并发隔离的上限、正在执行数和排队数
+     *
+     * @param container 规则容器
+     * @param bulkhead  并发隔离
+     * @return          注册的指标，并发隔离重建或移除时通过{@link #remove(List)}注销
+     */
+    public List<Meter> monitor(RuleContainer container, RuleBulkhead bulkhead) {
+        String rule = ruleTag(container);
+
+        return Arrays.asList(
+                Gauge.builder("dynamic.rule.bulkhead.max", bulkhead, RuleBulkhead::getMaxConcurrentCalls)
+                        .description("dynamic rule bulkhead concurrency limit")
+                        .tag(TAG_RULE, rule)
+                        .register(registry),
+                Gauge.builder("dynamic.rule.bulkhead.active", bulkhead, RuleBulkhead::getActive)
+                        .description("dynamic rule bulkhead active calls")
+                        .tag(TAG_RULE, rule)
+                        .register(registry),
+                Gauge.builder("dynamic.rule.bulkhead.waiting", bulkhead, RuleBulkhead::getWaiting)
+                        .description("dynamic rule bulkhead queued calls")
+                        .tag(TAG_RULE, rule)
+                        .register(registry));
+    }
+
+
+    /**
+     * 注销指标
+     *
+     * @param meters    指标
+     */
+    public void remove(List<Meter> meters) {
+        meters.forEach(registry::remove);
+    }
+
+
+    /**
+     * 记录并发已满被拒绝的请求
+     *
+     * @param container 规则容器
+     */
+    public void recordRejected(RuleContainer container) {
+        Counter.builder("dynamic.rule.bulkhead.rejected")
+                .description("dynamic rule calls rejected by bulkhead")
+                .tag(TAG_RULE, ruleTag(container))
+                .register(registry)
+                .increment();
+    }
+
+
+    /**
+     * 监控缓存命中、未命中和淘汰，缓存需开启recordStats
+     *
+     * @param cache     缓存
+     * @param name      缓存名称
+     */
+    public void monitor(Cache<?, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+    }
+
+
+    private static String ruleTag(RuleContainer container) {
+        return String.valueOf(container.getName());
+    }
+}
@@ -1,6 +1,7 @@
 package com.fly.dynamic.config;
 
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -14,6 +15,7 @@ import org.springframework.scheduling.annotation.EnableAsync;
 @ConditionalOnProperty(value = "dynamic.rule.enable", matchIfMissing = true)
 @EnableAsync(proxyTargetClass = true)
 @ComponentScan("com.fly.dynamic")
+@EnableConfigurationProperties(DynamicRuleProperties.class)
 public class DynamicRuleConfig {
 }
 
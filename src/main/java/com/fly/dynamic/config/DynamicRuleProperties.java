@@ -0,0 +1,337 @@
+package com.fly.dynamic.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 动态规则配置
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/2
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamic.rule")
+public class DynamicRuleProperties {
+
+    /**
+     * 是否启用动态规则
+     */
+    private boolean enable = true;
+
+    /**
+     * 规则容器缓存配置
+     */
+    private final Cache cache = new Cache();
+
+    /**
+     * 规则编译配置
+     */
+    private final Compile compile = new Compile();
+
+    /**
+     * 批量执行配置
+     */
+    private final Batch batch = new Batch();
+
+    /**
+     * 流式执行配置
+     */
+    private final Stream stream = new Stream();
+
+    /**
+     * 启动预编译配置
+     */
+    private final Preload preload = new Preload();
+
+    /**
+     * 编译产物缓存配置
+     */
+    private final Artifact artifact = new Artifact();
+
+    /**
+     * 集群缓存同步配置
+     */
+    private final Sync sync = new Sync();
+
+    /**
+     * 规则执行剖析配置
+     */
+    private final Profile profile = new Profile();
+
+    /**
+     * 异步执行配置
+     */
+    private final Async async = new Async();
+
+    /**
+     * 规则结果缓存配置，规则需配置result-cache=true才会使用
+     */
+    private final ResultCache resultCache = new ResultCache();
+
+    /**
+     * 打包模式配置
+     */
+    private final Packing packing = new Packing();
+
+    /**
+     * 保存时的规则性能检查配置
+     */
+    private final Lint lint = new Lint();
+
+    /**
+     * 规则默认执行配置
+     */
+    private final RuleOptions defaults = RuleOptions.defaults();
+
+    /**
+     * 按规则名称单独配置，如：dynamic.rule.rules.myRule.execution-mode=stateless
+     */
+    private final Map<String, RuleOptions> rules = new HashMap<>();
+
+    /**
+     * 自定义global，key为global名称，value为spring bean名称，
+     * 规则中声明同名global即可使用，如：global com.xx.UserService userService;
+     * 内置global：log、context、jdbcTemplate
+     */
+    private final Map<String, String> globals = new HashMap<>();
+
+
+    /**
+     * 获取规则的执行配置
+     *
+     * @param name  规则名称
+     * @return      配置
+     */
+    public RuleOptions getOptions(String name) {
+        RuleOptions options = name == null ? null : rules.get(name);
+        return options == null ? defaults : options.merge(defaults);
+    }
+
+
+    @Data
+    public static class Cache {
+
+        /**
+         * 最多缓存的规则容器数量
+         */
+        private long maximumSize = 1000;
+
+        /**
+         * 规则容器预估占用内存的上限，如：256MB，配置后按预估内存淘汰，不再限制容器数量
+         */
+        private DataSize maximumMemory;
+
+        /**
+         * 最多缓存的规则名称数量
+         */
+        private long maximumNameSize = 10000;
+
+        /**
+         * 不存在的规则id和名称的缓存时间，期间重复请求直接失败，不再查询数据库
+         */
+        private Duration negativeTtl = Duration.ofSeconds(10);
+    }
+
+
+    @Data
+    public static class Compile {
+
+        /**
+         * 后台编译线程数
+         */
+        private int poolSize = 2;
+    }
+
+
+    @Data
+    public static class Batch {
+
+        /**
+         * 批量执行线程数
+         */
+        private int poolSize = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * 等待队列长度，队列满时由调用线程执行
+         */
+        private int queueCapacity = 1000;
+
+        /**
+         * 单批最多参数数量
+         */
+        private int maxSize = 1000;
+    }
+
+
+    @Data
+    public static class Stream {
+
+        /**
+         * 单个流最多同时执行的记录数，超过后等待最早的记录完成再继续读取
+         */
+        private int maxInFlight = 64;
+    }
+
+
+    @Data
+    public static class Preload {
+
+        /**
+         * 启动时是否预编译全部规则，预编译完成或超时前应用不会就绪
+         */
+        private boolean enabled = false;
+
+        /**
+         * 预编译线程数
+         */
+        private int poolSize = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * 最长等待时间，超时后剩余规则继续在后台编译
+         */
+        private Duration timeout = Duration.ofMinutes(1);
+    }
+
+
+    @Data
+    public static class Artifact {
+
+        /**
+         * 是否将编译好的规则缓存到本地磁盘，重启后规则未变化时不再重新编译
+         */
+        private boolean enabled = false;
+
+        /**
+         * 缓存目录，加载时会反序列化其中的文件，只能使用当前用户私有的目录，
+         * 不存在时按只有当前用户可访问的权限创建
+         */
+        private String directory = System.getProperty("user.home") + "/.dynamic-rule/artifacts";
+    }
+
+
+    @Data
+    public static class Sync {
+
+        /**
+         * 是否定时轮询数据库，同步其他节点对规则的修改和删除
+         */
+        private boolean enabled = false;
+
+        /**
+         * 轮询间隔
+         */
+        private Duration interval = Duration.ofSeconds(5);
+
+        /**
+         * 每次轮询向前多查询的时间，容忍节点间的时钟偏差
+         */
+        private Duration overlap = Duration.ofMinutes(1);
+
+        /**
+         * 按主键确认已加载的规则是否被删除的间隔
+         */
+        private Duration probeInterval = Duration.ofMinutes(1);
+    }
+
+
+    @Data
+    public static class Profile {
+
+        /**
+         * 是否开启执行剖析，运行中可通过接口修改
+         */
+        private boolean enabled = false;
+
+        /**
+         * 采样率，0~1
+         */
+        private double sampleRate = 0.01;
+    }
+
+
+    @Data
+    public static class Async {
+
+        /**
+         * 异步执行线程数，规则中有数据库等阻塞调用时可适当调大
+         */
+        private int poolSize = Runtime.getRuntime().availableProcessors() * 4;
+
+        /**
+         * 等待队列长度，队列满时拒绝
+         */
+        private int queueCapacity = 1000;
+
+        /**
+         * 是否每次执行使用一个虚拟线程，需要JDK21及以上，低版本JDK仍使用线程池
+         */
+        private boolean virtualThreads = false;
+    }
+
+
+    @Data
+    public static class ResultCache {
+
+        /**
+         * 最多缓存的结果数量
+         */
+        private long maximumSize = 10000;
+
+        /**
+         * 结果缓存时间
+         */
+        private Duration ttl = Duration.ofMinutes(1);
+    }
+
+
+    @Data
+    public static class Packing {
+
+        /**
+         * 是否将多个规则编译到共享的KieBase中，规则数量很多时减少内存占用，
+         * 打包的规则不使用session池和编译产物缓存
+         */
+        private boolean enabled = false;
+
+        /**
+         * 共享KieBase数量，规则按id分配
+         */
+        private int groupCount = 16;
+    }
+
+
+    @Data
+    public static class Lint {
+
+        /**
+         * 是否在保存时检查规则性能问题，警告记录日志并在保存结果中返回
+         */
+        private boolean enabled = true;
+
+        /**
+         * 严格模式，超过任一上限时拒绝保存
+         */
+        private boolean strict = false;
+
+        /**
+         * 严重程度总分上限
+         */
+        private int maxScore = 10;
+
+        /**
+         * 单条规则笛卡尔积连接数上限
+         */
+        private int maxCrossProducts = 0;
+
+        /**
+         * 条件节点数上限
+         */
+        private int maxNodes = 200;
+    }
+}
@@ -0,0 +1,119 @@
+package com.fly.dynamic.config;
+
+import com.fly.dynamic.runtime.CompileMode;
+import com.fly.dynamic.runtime.ExecutionMode;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * 单个规则的执行配置，未配置的项使用默认配置
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/2
+ */
+@Data
+public class RuleOptions {
+
+    /**
+     * 执行模式
+     */
+    private ExecutionMode executionMode;
+
+    /**
+     * 编译方式
+     */
+    private CompileMode compileMode;
+
+    /**
+     * session池大小，仅POOLED模式有效
+     */
+    private Integer poolSize;
+
+    /**
+     * 是否将日志、spring容器和jdbcTemplate作为事实插入session，
+     * 兼容旧规则中以事实方式匹配这些对象的写法；关闭后只通过global提供
+     */
+    private Boolean infrastructureFacts;
+
+    /**
+     * 单次执行的最长时间，超时后中止执行并返回超时错误，0表示不限制
+     */
+    private Duration timeout;
+
+    /**
+     * 单次执行最多触发的规则数，超过后中止执行并返回错误，0表示不限制
+     */
+    private Integer maxFires;
+
+    /**
+     * 最多同时执行数，超过后排队或拒绝，0表示不限制
+     */
+    private Integer maxConcurrentCalls;
+
+    /**
+     * 并发已满时最多排队数，0表示直接拒绝
+     */
+    private Integer maxQueue;
+
+    /**
+     * 并发已满时最长排队时间，超时后拒绝
+     */
+    private Duration maxWait;
+
+    /**
+     * 是否缓存执行结果，仅适用于结果只取决于参数的确定性规则
+     */
+    private Boolean resultCache;
+
+    /**
+     * 是否合并同时到达的相同参数请求，只执行一次并共享结果，仅适用于确定性规则
+     */
+    private Boolean coalesce;
+
+
+    /**
+     * 默认配置
+     *
+     * @return 配置
+     */
+    public static RuleOptions defaults() {
+        RuleOptions options = new RuleOptions();
+        options.setExecutionMode(ExecutionMode.STATEFUL);
+        options.setCompileMode(CompileMode.DRL);
+        options.setPoolSize(8);
+        options.setInfrastructureFacts(true);
+        options.setTimeout(Duration.ZERO);
+        options.setMaxFires(0);
+        options.setMaxConcurrentCalls(0);
+        options.setMaxQueue(0);
+        options.setMaxWait(Duration.ZERO);
+        options.setResultCache(false);
+        options.setCoalesce(false);
+        return options;
+    }
+
+
+    /**
+     * 以当前配置为准，未配置的项使用默认配置
+     *
+     * @param defaults  默认配置
+     * @return          合并后的配置
+     */
+    public RuleOptions merge(RuleOptions defaults) {
+        RuleOptions options = new RuleOptions();
+        options.setExecutionMode(executionMode != null ? executionMode : defaults.getExecutionMode());
+        options.setCompileMode(compileMode != null ? compileMode : defaults.getCompileMode());
+        options.setPoolSize(poolSize != null ? poolSize : defaults.getPoolSize());
+        options.setInfrastructureFacts(infrastructureFacts != null ? infrastructureFacts : defaults.getInfrastructureFacts());
+        options.setTimeout(timeout != null ? timeout : defaults.getTimeout());
+        options.setMaxFires(maxFires != null ? maxFires : defaults.getMaxFires());
+        options.setMaxConcurrentCalls(maxConcurrentCalls != null ? maxConcurrentCalls : defaults.getMaxConcurrentCalls());
+        options.setMaxQueue(maxQueue != null ? maxQueue : defaults.getMaxQueue());
+        options.setMaxWait(maxWait != null ? maxWait : defaults.getMaxWait());
+        options.setResultCache(resultCache != null ? resultCache : defaults.getResultCache());
+        options.setCoalesce(coalesce != null ? coalesce : defaults.getCoalesce());
+        return options;
+    }
+}
@@ -0,0 +1,127 @@
+package com.fly.dynamic.controller;
+
+import com.fly.dynamic.entity.RuleResult;
+import com.fly.dynamic.runtime.ExecutionMode;
+import com.fly.dynamic.service.DynamicAsyncService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.fly.dynamic.controller.DynamicController.MODE_HEADER;
+
+/**
+ * 动态异步controller，规则在独立线程池中执行，执行期间释放servlet线程
+ *
+ * @author guoxiang
+ */
+@RestController
+@RequestMapping("/rule/dynamic/async")
+@Slf4j
+@RequiredArgsConstructor
+public class DynamicAsyncController {
+
+    private final DynamicAsyncService dynamicAsyncService;
+
+    /**
+     * 异步接口 POST
+     *
+     * @param ruleId    ruleId
+     * @param param     param
+     * @param mode      执行模式
+     * @return          result
+     */
+    @PostMapping("/{ruleId}")
+    public CompletableFuture<RuleResult> handlePost(@PathVariable Long ruleId, @RequestBody Map<String, Object> param,
+                                                    @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
+
+        log.debug("- handle async post dynamic rule: {}, param: {}", ruleId, param);
+        return dynamicAsyncService.handleById(ruleId, param, mode);
+    }
+
+    /**
+     * 异步接口 GET
+     *
+     * @param ruleId    ruleId
+     * @param param     param
+     * @param mode      执行模式
+     * @return          result
+     */
+    @GetMapping("/{ruleId}")
+    public CompletableFuture<RuleResult> handleGet(@PathVariable Long ruleId, @RequestParam Map<String, Object> param,
+                                                   @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
+
+        log.debug("- handle async get dynamic rule: {}, param: {}", ruleId, param);
+        return dynamicAsyncService.handleById(ruleId, param, mode);
+    }
+
+    /**
+     * 异步接口 POST
+     *
+     * @param name      rule name
+     * @param param     param
+     * @param mode      执行模式
+     * @return          result
+     */
+    @PostMapping("/name/{name}")
+    public CompletableFuture<RuleResult> handlePost(@PathVariable String name, @RequestBody Map<String, Object> param,
+                                                    @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
+
+        log.debug("- handle async post dynamic rule: {}, param: {}", name, param);
+        return dynamicAsyncService.handleByName(name, param, mode);
+    }
+
+    /**
+     * 异步接口 GET
+     *
+     * @param name      rule name
+     * @param param     param
+     * @param mode      执行模式
+     * @return          result
+     */
+    @GetMapping("/name/{name}")
+    public CompletableFuture<RuleResult> handleGet(@PathVariable String name, @RequestParam Map<String, Object> param,
+                                                   @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
+
+        log.debug("- handle async get dynamic rule: {}, param: {}", name, param);
+        return dynamicAsyncService.handleByName(name, param, mode);
+    }
+
+    /**
+     * 异步接口 POST，请求体直接反序列化为规则中声明的事实类型
+     *
+     * @param ruleId    ruleId
+     * @param body      json请求体
+     * @param mode      执行模式
+     * @return          result
+     */
+    @PostMapping(value = "/raw/{ruleId}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<RuleResult> handleRaw(@PathVariable Long ruleId,
+                                                   @RequestBody byte[] body,
+                                                   @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
+
+        log.debug("- handle async raw dynamic rule: {}, body size: {}", ruleId, body.length);
+        return dynamicAsyncService.handleRawById(ruleId, body, mode);
+    }
+
+    /**
+     * 异步接口 POST，请求体直接反序列化为规则中声明的事实类型
+     *
+     * @param name      rule name
+     * @param body      json请求体
+     * @param mode      执行模式
+     * @return          result
+     */
+    @PostMapping(value = "/raw/name/{name}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<RuleResult> handleRaw(@PathVariable String name,
+                                                   @RequestBody byte[] body,
+                                                   @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
+
+        log.debug("- handle async raw dynamic rule: {}, body size: {}", name, body.length);
+        return dynamicAsyncService.handleRawByName(name, body, mode);
+    }
+
+}
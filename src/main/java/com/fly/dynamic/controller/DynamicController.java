@@ -1,11 +1,14 @@
 package com.fly.dynamic.controller;
 
 import com.fly.dynamic.entity.RuleResult;
+import com.fly.dynamic.runtime.ExecutionMode;
 import com.fly.dynamic.service.DynamicService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -18,6 +21,12 @@ import java.util.Map;
 @Slf4j
 @RequiredArgsConstructor
 public class DynamicController {
+
+    /**
+     * 指定本次调用的执行模式，为空时使用规则配置
+     */
+    public static final String MODE_HEADER = "X-Rule-Mode";
+
     private final DynamicService dynamicService;
 
     /**
@@ -25,14 +34,16 @@ public class DynamicController {
      *
      * @param ruleId    ruleId
      * @param param param
+     * @param mode  执行模式
      * @return      result
      */
     @PostMapping("/{ruleId}")
-    public RuleResult handlePost(@PathVariable Long ruleId, @RequestBody Map<String, Object> param) {
+    public RuleResult handlePost(@PathVariable Long ruleId, @RequestBody Map<String, Object> param,
+                                 @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
 
         log.debug("- handle post dynamic rule: {}, param: {}", ruleId, param);
 
-        RuleResult result = dynamicService.handleById(ruleId, param);
+        RuleResult result = dynamicService.handleById(ruleId, param, mode);
 
         log.debug("- dynamic post controller result: {}", result);
         return result;
@@ -43,14 +54,16 @@ public class DynamicController {
      *
      * @param ruleId    ruleId
      * @param param param
+     * @param mode  执行模式
      * @return      result
      */
     @GetMapping("/{ruleId}")
-    public RuleResult handleGet(@PathVariable Long ruleId, @RequestParam Map<String, Object> param) {
+    public RuleResult handleGet(@PathVariable Long ruleId, @RequestParam Map<String, Object> param,
+                                @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
 
         log.debug("- handle get dynamic rule: {}, param: {}", ruleId, param);
 
-        RuleResult result = dynamicService.handleById(ruleId, param);
+        RuleResult result = dynamicService.handleById(ruleId, param, mode);
 
         log.debug("- dynamic get controller result: {}", result);
         return result;
@@ -61,14 +74,16 @@ public class DynamicController {
      *
      * @param name  rule name
      * @param param param
+     * @param mode  执行模式
      * @return      result
      */
     @PostMapping("/name/{name}")
-    public RuleResult handlePost(@PathVariable String name, @RequestBody Map<String, Object> param) {
+    public RuleResult handlePost(@PathVariable String name, @RequestBody Map<String, Object> param,
+                                 @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
 
         log.debug("- handle post dynamic rule: {}, param: {}", name, param);
 
-        RuleResult result = dynamicService.handleByName(name, param);
+        RuleResult result = dynamicService.handleByName(name, param, mode);
 
         log.debug("- dynamic post controller result: {}", result);
         return result;
@@ -79,18 +94,97 @@ public class DynamicController {
      *
      * @param name    ruleId
      * @param param param
+     * @param mode  执行模式
      * @return      result
      */
     @GetMapping("/name/{name}")
-    public RuleResult handleGet(@PathVariable String name, @RequestParam Map<String, Object> param) {
+    public RuleResult handleGet(@PathVariable String name, @RequestParam Map<String, Object> param,
+                                @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
 
         log.debug("- handle get dynamic rule: {}, param: {}", name, param);
 
-        RuleResult result = dynamicService.handleByName(name, param);
+        RuleResult result = dynamicService.handleByName(name, param, mode);
 
         log.debug("- dynamic get controller result: {}", result);
         return result;
     }
 
+    /**
+     * 动态接口 POST，请求体直接反序列化为规则中声明的事实类型
+     *
+     * @param ruleId    ruleId
+     * @param body  json请求体
+     * @param mode  执行模式
+     * @return      result
+     */
+    @PostMapping(value = "/raw/{ruleId}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public RuleResult handleRaw(@PathVariable Long ruleId,
+                                @RequestBody byte[] body,
+                                @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
+
+        log.debug("- handle raw dynamic rule: {}, body size: {}", ruleId, body.length);
+
+        RuleResult result = dynamicService.handleRawById(ruleId, body, mode);
+
+        log.debug("- dynamic raw controller result: {}", result);
+        return result;
+    }
+
+    /**
+     * 动态接口 POST，请求体直接反序列化为规则中声明的事实类型
+     *
+     * @param name  rule name
+     * @param body  json请求体
+     * @param mode  执行模式
+     * @return      result
+     */
+    @PostMapping(value = "/raw/name/{name}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public RuleResult handleRaw(@PathVariable String name,
+                                @RequestBody byte[] body,
+                                @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
+
+        log.debug("- handle raw dynamic rule: {}, body size: {}", name, body.length);
+
+        RuleResult result = dynamicService.handleRawByName(name, body, mode);
+
+        log.debug("- dynamic raw controller result: {}", result);
+        return result;
+    }
+
+    /**
+     * 批量接口，所有参数使用同一个规则并行执行
+     *
+     * @param ruleId    ruleId
+     * @param params    参数列表
+     * @param mode      执行模式
+     * @return          结果列表，与参数一一对应
+     */
+    @PostMapping("/batch/{ruleId}")
+    public List<RuleResult> handleBatch(@PathVariable Long ruleId,
+                                        @RequestBody List<Map<String, Object>> params,
+                                        @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
+
+        log.debug("- handle batch dynamic rule: {}, size: {}", ruleId, params.size());
+
+        return dynamicService.handleBatchById(ruleId, params, mode);
+    }
+
+    /**
+     * 批量接口，所有参数使用同一个规则并行执行
+     *
+     * @param name      rule name
+     * @param params    参数列表
+     * @param mode      执行模式
+     * @return          结果列表，与参数一一对应
+     */
+    @PostMapping("/batch/name/{name}")
+    public List<RuleResult> handleBatch(@PathVariable String name,
+                                        @RequestBody List<Map<String, Object>> params,
+                                        @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode) {
+
+        log.debug("- handle batch dynamic rule: {}, size: {}", name, params.size());
+
+        return dynamicService.handleBatchByName(name, params, mode);
+    }
 
 }
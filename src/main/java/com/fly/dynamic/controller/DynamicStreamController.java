@@ -0,0 +1,75 @@
+package com.fly.dynamic.controller;
+
+import com.fly.dynamic.runtime.ExecutionMode;
+import com.fly.dynamic.service.DynamicService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static com.fly.dynamic.controller.DynamicController.MODE_HEADER;
+
+/**
+ * 动态流式controller，请求和响应均为换行分隔的json（NDJSON）
+ *
+ * @author guoxiang
+ */
+@RestController
+@RequestMapping("/rule/dynamic/stream")
+@Slf4j
+@RequiredArgsConstructor
+public class DynamicStreamController {
+
+    private final DynamicService dynamicService;
+
+    /**
+     * 流式接口，按输入顺序逐行输出结果
+     *
+     * @param ruleId    ruleId
+     * @param mode      执行模式
+     * @param request   request
+     * @param response  response
+     * @throws IOException 读写异常
+     */
+    @PostMapping("/{ruleId}")
+    public void handleStream(@PathVariable Long ruleId,
+                             @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+
+        log.debug("- handle stream dynamic rule: {}", ruleId);
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        dynamicService.handleStreamById(ruleId, request.getInputStream(), response.getOutputStream(), mode);
+
+        log.debug("- dynamic stream finish: {}", ruleId);
+    }
+
+    /**
+     * 流式接口，按输入顺序逐行输出结果
+     *
+     * @param name      rule name
+     * @param mode      执行模式
+     * @param request   request
+     * @param response  response
+     * @throws IOException 读写异常
+     */
+    @PostMapping("/name/{name}")
+    public void handleStream(@PathVariable String name,
+                             @RequestHeader(value = MODE_HEADER, required = false) ExecutionMode mode,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+
+        log.debug("- handle stream dynamic rule: {}", name);
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        dynamicService.handleStreamByName(name, request.getInputStream(), response.getOutputStream(), mode);
+
+        log.debug("- dynamic stream finish: {}", name);
+    }
+
+}
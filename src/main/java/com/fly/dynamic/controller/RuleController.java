@@ -3,20 +3,22 @@ package com.fly.dynamic.controller;
 import com.fly.dynamic.dto.Page;
 import com.fly.dynamic.dto.RuleBriefDto;
 import com.fly.dynamic.dto.RuleDetailDto;
+import com.fly.dynamic.dto.RuleLintDto;
+import com.fly.dynamic.dto.RuleProfileDto;
 import com.fly.dynamic.entity.Rule;
 import com.fly.dynamic.entity.RuleResult;
+import com.fly.dynamic.service.RuleCompiler;
+import com.fly.dynamic.service.RuleLinter;
+import com.fly.dynamic.service.RuleProfiler;
 import com.fly.dynamic.service.RuleService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.kie.api.builder.Message;
-import org.kie.api.builder.Results;
-import org.kie.api.io.ResourceType;
-import org.kie.internal.utils.KieHelper;
+import org.kie.api.runtime.KieContainer;
 import org.springframework.util.Assert;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static com.fly.dynamic.common.RuleErrorMessage.*;
 
@@ -33,6 +35,12 @@ public class RuleController {
 
     private final RuleService ruleService;
 
+    private final RuleProfiler ruleProfiler;
+
+    private final RuleCompiler ruleCompiler;
+
+    private final RuleLinter ruleLinter;
+
     /**
      * 新增或修改规则
      * @param rule  规则
@@ -46,34 +54,38 @@ public class RuleController {
         Assert.hasText(name, NAME_ERROR);
         Assert.isTrue(name.matches("^[0-9a-zA-Z_]{4,10}$"), NAME_ERROR);
 
-        checkRuleText(rule.getRuleText());
-        ruleService.save(rule);
+        //校验时的编译结果在保存提交后直接安装，不再重复编译
+        KieContainer verified = ruleCompiler.verify(rule.getRuleText());
+        RuleLintDto lint;
+        try {
+            lint = ruleLinter.check(rule.getRuleText());
+        } catch (RuntimeException e) {
+            verified.dispose();
+            throw e;
+        }
+
+        //校验结果交由ruleService释放，包括保存失败和事务回滚
+        ruleService.save(rule, verified);
 
         log.info("save rule success id: {}", rule.getId());
-        return RuleResult.success(rule.getId());
+        RuleResult result = RuleResult.success(rule.getId());
+        if (lint != null && !lint.getWarnings().isEmpty()) {
+            result.setMessage(RuleLinter.describe(lint));
+        }
+        return result;
     }
 
 
     /**
-     * 校验规则是否有问题
+     * 检查规则性能问题，不保存
      *
-     * @param ruleText 规则文本
+     * @param rule  规则
+     * @return      检查结果
      */
-    private void checkRuleText(String ruleText) {
-        Assert.hasText(ruleText, RULE_TEXT_NULL_ERROR);
-
-        KieHelper helper = new KieHelper();
-        Results results = helper.addContent(ruleText, ResourceType.DRL).verify();
-        List<Message> messages = results.getMessages();
-        if (messages.isEmpty()) {
-            return;
-        }
-
-        log.error("verify result: {}", results);
-        String error = RULE_SYNTAX_ERROR + "\n" +
-                messages.stream().map(Message::getText).collect(Collectors.joining("\n"));
-
-        throw new IllegalArgumentException(error);
+    @PostMapping("lint")
+    public RuleResult lintRule(@RequestBody Rule rule) {
+        Assert.hasText(rule.getRuleText(), RULE_TEXT_NULL_ERROR);
+        return RuleResult.success(ruleLinter.lint(rule.getRuleText()));
     }
 
 
@@ -115,4 +127,66 @@ public class RuleController {
         return RuleResult.success(RuleDetailDto.convertFrom(rule));
     }
 
+
+    /**
+     * 查询执行剖析配置和全部规则的剖析结果
+     *
+     * @return  result
+     */
+    @GetMapping("profile")
+    public RuleResult profile() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("enabled", ruleProfiler.isEnabled());
+        data.put("sampleRate", ruleProfiler.getSampleRate());
+        data.put("rules", ruleProfiler.snapshot());
+
+        return RuleResult.success(data);
+    }
+
+
+    /**
+     * 查询单个规则的剖析结果
+     *
+     * @param name  规则名称
+     * @return      result
+     */
+    @GetMapping("profile/{name}")
+    public RuleResult profileByName(@PathVariable String name) {
+        RuleProfileDto profile = ruleProfiler.snapshot(name);
+        Assert.notNull(profile, CANNOT_FIND_RULE_ERROR);
+
+        return RuleResult.success(profile);
+    }
+
+
+    /**
+     * 开启或关闭执行剖析
+     *
+     * @param enabled       是否开启
+     * @param sampleRate    采样率，0~1，为空时不修改
+     * @return              result
+     */
+    @PutMapping("profile")
+    public RuleResult updateProfile(@RequestParam boolean enabled,
+                                    @RequestParam(required = false) Double sampleRate) {
+        log.info("update rule profile, enabled: {}, sample rate: {}", enabled, sampleRate);
+        ruleProfiler.update(enabled, sampleRate == null ? ruleProfiler.getSampleRate() : sampleRate);
+
+        return RuleResult.success();
+    }
+
+
+    /**
+     * 清空剖析结果
+     *
+     * @return  result
+     */
+    @DeleteMapping("profile")
+    public RuleResult resetProfile() {
+        log.info("reset rule profile");
+        ruleProfiler.reset();
+
+        return RuleResult.success();
+    }
+
 }
@@ -13,6 +13,7 @@ import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
+import java.time.LocalDateTime;
 import java.util.*;
 
 import static com.fly.dynamic.common.RuleErrorMessage.ID_NULL_ERROR;
@@ -140,6 +141,38 @@ public class RuleDao {
         return !Objects.equals(count, 0);
     }
 
+    /**
+     * 查询最近更新的规则id
+     *
+     * @param limit 数量
+     * @return      id列表
+     */
+    public List<Long> findRecentIds(long limit) {
+        return jdbc.queryForList("select id from tb_rule order by update_time desc limit ?", Long.class, limit);
+    }
+
+    /**
+     * 查询更新时间不早于水位线的规则，只使用update_time索引；
+     * 只返回id、名称和更新时间，不读取规则文本
+     *
+     * @param watermark 水位线
+     * @return          规则列表
+     */
+    public List<Rule> findChanged(LocalDateTime watermark) {
+        return jdbc.query("select id, name, update_time from tb_rule where update_time >= ?", RULE_MAPPER, watermark);
+    }
+
+    /**
+     * 查询仍然存在的规则id，调用方负责控制每批数量
+     *
+     * @param ids   id
+     * @return      存在的id
+     */
+    public List<Long> findExistingIds(Collection<Long> ids) {
+        return namedJdbc.queryForList("select id from tb_rule where id in (:ids)",
+                Collections.singletonMap("ids", ids), Long.class);
+    }
+
     /**
      * 根据名称查找rule
      *
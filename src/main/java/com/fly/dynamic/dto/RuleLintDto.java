@@ -0,0 +1,65 @@
+package com.fly.dynamic.dto;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 规则性能检查结果
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/6
+ */
+@Data
+@Accessors(chain = true)
+public class RuleLintDto {
+
+    /**
+     * 严重程度总分，各项警告严重程度之和
+     */
+    private int score;
+
+    /**
+     * 条件节点数，pattern和eval的数量，近似Rete网络大小
+     */
+    private int nodes;
+
+    /**
+     * 单条规则中没有任何关联条件的pattern最多数量，即笛卡尔积的连接数
+     */
+    private int crossProducts;
+
+    /**
+     * 警告，按严重程度倒序
+     */
+    private List<Warning> warnings = new ArrayList<>();
+
+
+    @Data
+    @Accessors(chain = true)
+    public static class Warning {
+
+        /**
+         * DRL中的规则名
+         */
+        private String rule;
+
+        /**
+         * 警告类型
+         */
+        private String type;
+
+        /**
+         * 严重程度，1~5
+         */
+        private int severity;
+
+        /**
+         * 说明
+         */
+        private String message;
+    }
+}
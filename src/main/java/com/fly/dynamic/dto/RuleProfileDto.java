@@ -0,0 +1,84 @@
+package com.fly.dynamic.dto;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+
+/**
+ * 规则执行剖析结果
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/5
+ */
+@Data
+@Accessors(chain = true)
+public class RuleProfileDto {
+
+    /**
+     * 规则名称
+     */
+    private String name;
+
+    /**
+     * 采样的执行次数
+     */
+    private long samples;
+
+    /**
+     * 采样执行中工作内存的最大事实数
+     */
+    private long maxWorkingMemory;
+
+    /**
+     * DRL中各条规则的统计，按consequence总耗时倒序
+     */
+    private List<DrlRule> rules;
+
+
+    @Data
+    @Accessors(chain = true)
+    public static class DrlRule {
+
+        /**
+         * DRL中的规则名
+         */
+        private String name;
+
+        /**
+         * 激活次数
+         */
+        private long activations;
+
+        /**
+         * 激活后被取消的次数
+         */
+        private long cancellations;
+
+        /**
+         * 触发次数
+         */
+        private long fired;
+
+        /**
+         * consequence总耗时，微秒
+         */
+        private long totalMicros;
+
+        /**
+         * consequence平均耗时，微秒
+         */
+        private long avgMicros;
+
+        /**
+         * consequence最大耗时，微秒
+         */
+        private long maxMicros;
+
+        /**
+         * 触发时工作内存的平均事实数
+         */
+        private long avgWorkingMemory;
+    }
+}
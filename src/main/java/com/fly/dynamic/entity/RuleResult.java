@@ -10,6 +10,21 @@ import lombok.experimental.Accessors;
 @Accessors(chain = true)
 public class RuleResult {
 
+    /**
+     * 规则执行超时
+     */
+    public static final int TIMEOUT = 2;
+
+    /**
+     * 规则触发次数超过上限
+     */
+    public static final int FIRE_LIMIT = 3;
+
+    /**
+     * 规则并发已满，请求被拒绝
+     */
+    public static final int REJECTED = 4;
+
     private String message;
 
     private Integer code;
@@ -27,4 +42,8 @@ public class RuleResult {
     public static RuleResult fail(String message) {
         return new RuleResult().setCode(1).setMessage(message);
     }
+
+    public static RuleResult fail(Integer code, String message) {
+        return new RuleResult().setCode(code).setMessage(message);
+    }
 }
@@ -0,0 +1,22 @@
+package com.fly.dynamic.runtime;
+
+/**
+ * 规则编译方式
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/6
+ */
+public enum CompileMode {
+
+    /**
+     * 传统DRL编译，条件通过MVEL解释或运行时生成的字节码执行
+     */
+    DRL,
+
+    /**
+     * 可执行模型，编译时把条件生成为java lambda，执行时不再反射求值；
+     * 规则使用了不支持的特性时退回DRL编译
+     */
+    EXECUTABLE_MODEL
+}
@@ -0,0 +1,132 @@
+package com.fly.dynamic.runtime;
+
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+import org.kie.api.runtime.rule.RuleRuntime;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单次执行的保护，每条规则触发后检查是否超过截止时间或触发次数上限，超过则中止执行
+ * <p>
+ * 有状态session另由看门狗线程到期调用{@link #expire(RuleRuntime)}，
+ * 无状态session没有对外的halt入口，只依赖触发后的检查；
+ * 两种方式都只能在规则触发之间中止，单个consequence内部的死循环无法打断
+ * <p>
+ * 状态只能从RUNNING变为DONE、EXPIRED或LIMITED一次，只有抢到状态的一方调用halt；
+ * 执行线程在归还或销毁session前调用{@link #finish()}，看门狗已抢到状态时等待其halt完成，
+ * 避免迟到的看门狗中止已经归还到池中、正在被其他请求使用的session
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/5
+ */
+public class ExecutionGuard extends DefaultAgendaEventListener {
+
+    private static final int RUNNING = 0;
+
+    private static final int DONE = 1;
+
+    private static final int EXPIRED = 2;
+
+    private static final int LIMITED = 3;
+
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+    /**
+     * 抢到状态的一方halt完成后释放
+     */
+    private final CountDownLatch halted = new CountDownLatch(1);
+
+    /**
+     * 截止时间，0表示不限时
+     */
+    private final long deadline;
+
+    private final int maxFires;
+
+    /**
+     * 已触发次数，只在执行线程中修改
+     */
+    private int fired;
+
+    /**
+     * @param timeoutNanos  超时时间，纳秒，0表示不限时
+     * @param maxFires      最多触发次数，0表示不限制
+     */
+    public ExecutionGuard(long timeoutNanos, int maxFires) {
+        this.deadline = timeoutNanos > 0 ? System.nanoTime() + timeoutNanos : 0;
+        this.maxFires = maxFires;
+    }
+
+
+    @Override
+    public void afterMatchFired(AfterMatchFiredEvent event) {
+        fired++;
+
+        //多触发一次再中止，用于区分恰好触发maxFires次和超过上限
+        if (maxFires > 0 && fired > maxFires) {
+            halt(event.getKieRuntime(), LIMITED);
+        } else if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+            halt(event.getKieRuntime(), EXPIRED);
+        }
+    }
+
+
+    /**
+     * 看门狗到期调用，执行仍在进行时标记超时并中止执行
+     *
+     * @param runtime   session
+     */
+    public void expire(RuleRuntime runtime) {
+        halt(runtime, EXPIRED);
+    }
+
+
+    /**
+     * 执行结束，归还或销毁session前调用；状态已被抢走时等待对方的halt完成
+     */
+    public void finish() {
+        if (state.compareAndSet(RUNNING, DONE)) {
+            return;
+        }
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                halted.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private void halt(RuleRuntime runtime, int reason) {
+        if (!state.compareAndSet(RUNNING, reason)) {
+            return;
+        }
+
+        try {
+            runtime.halt();
+        } finally {
+            halted.countDown();
+        }
+    }
+
+
+    public boolean isTimedOut() {
+        return state.get() == EXPIRED;
+    }
+
+
+    public boolean isLimited() {
+        return state.get() == LIMITED;
+    }
+}
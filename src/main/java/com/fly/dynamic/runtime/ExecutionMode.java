@@ -0,0 +1,26 @@
+package com.fly.dynamic.runtime;
+
+/**
+ * 规则执行模式
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/2
+ */
+public enum ExecutionMode {
+
+    /**
+     * 每次请求新建有状态session
+     */
+    STATEFUL,
+
+    /**
+     * 无状态session，适合一次性请求响应的规则
+     */
+    STATELESS,
+
+    /**
+     * 从session池中借用有状态session，用完后重置归还
+     */
+    POOLED
+}
@@ -0,0 +1,21 @@
+package com.fly.dynamic.runtime;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 规则中声明的事实类型，及其预先构建的反序列化器
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/3
+ */
+@Getter
+@RequiredArgsConstructor
+public class FactBinding {
+
+    private final Class<?> factClass;
+
+    private final ObjectReader reader;
+}
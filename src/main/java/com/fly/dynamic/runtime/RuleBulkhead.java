@@ -0,0 +1,97 @@
+package com.fly.dynamic.runtime;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个规则的并发隔离，限制同时执行数和排队数，排队已满或等待超时立即拒绝
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/5
+ */
+public class RuleBulkhead {
+
+    private final int maxConcurrentCalls;
+
+    private final int maxQueue;
+
+    private final long maxWaitNanos;
+
+    private final Semaphore semaphore;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * @param maxConcurrentCalls    最多同时执行数
+     * @param maxQueue              最多排队数，0表示不排队
+     * @param maxWaitNanos          最长排队时间，纳秒，0表示不排队
+     */
+    public RuleBulkhead(int maxConcurrentCalls, int maxQueue, long maxWaitNanos) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = maxWaitNanos;
+        this.semaphore = new Semaphore(maxConcurrentCalls, true);
+    }
+
+
+    /**
+     * 占用执行名额，没有空闲名额时排队等待
+     *
+     * @return 是否占用成功，失败时无需释放
+     */
+    public boolean tryAcquire() {
+        if (semaphore.tryAcquire()) {
+            return true;
+        }
+        if (maxQueue <= 0 || maxWaitNanos <= 0) {
+            return false;
+        }
+
+        try {
+            if (waiting.incrementAndGet() > maxQueue) {
+                return false;
+            }
+            return semaphore.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+
+    /**
+     * 释放执行名额
+     */
+    public void release() {
+        semaphore.release();
+    }
+
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+
+    /**
+     * 正在执行数
+     *
+     * @return 数量
+     */
+    public int getActive() {
+        return maxConcurrentCalls - semaphore.availablePermits();
+    }
+
+
+    /**
+     * 排队数
+     *
+     * @return 数量
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+}
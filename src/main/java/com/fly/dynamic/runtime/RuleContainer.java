@@ -0,0 +1,337 @@
+package com.fly.dynamic.runtime;
+
+import com.fly.dynamic.config.RuleOptions;
+import com.fly.dynamic.entity.Rule;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.drools.core.impl.InternalKnowledgeBase;
+import org.kie.api.KieBase;
+import org.kie.api.definition.KiePackage;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.KieSessionsPool;
+import org.kie.api.runtime.StatelessKieSession;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 某一版本的规则容器
+ * 记录在途请求数，被替换或删除后等在途请求全部结束再释放
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/2
+ */
+@Slf4j
+public class RuleContainer {
+
+    /**
+     * 内存预估系数，按经验值粗略估计，只用于缓存淘汰时比较规则大小
+     */
+    private static final long KIE_BASE_BYTES = 256 * 1024;
+
+    private static final long NODE_BYTES = 2 * 1024;
+
+    private static final long RULE_BYTES = 8 * 1024;
+
+    private static final long DRL_CHAR_BYTES = 16;
+
+    private static final long PACKED_NODES_PER_RULE = 4;
+
+    @Getter
+    private final Long id;
+
+    @Getter
+    private final String name;
+
+    /**
+     * 版本号，越大越新
+     */
+    @Getter
+    private final long version;
+
+    @Getter
+    private final LocalDateTime updateTime;
+
+    /**
+     * 规则文本摘要，更新时间只精确到秒，集群同步时据此判断内容是否变化
+     */
+    @Getter
+    private final String digest;
+
+    @Getter
+    private final KieBase kieBase;
+
+    /**
+     * 从编译产物缓存加载时为空，此时不支持session池
+     */
+    private final KieContainer kieContainer;
+
+    /**
+     * 规则执行配置
+     */
+    @Getter
+    private final RuleOptions options;
+
+    /**
+     * 规则中声明的global及其取值，编译时解析一次
+     */
+    @Getter
+    private final Map<String, Object> globals;
+
+    /**
+     * 第一个包含规则的包中声明的事实类型，编译时解析一次
+     */
+    @Getter
+    private final List<FactBinding> factBindings;
+
+    /**
+     * 打包模式下所属的共享KieBase，独立编译时为空
+     */
+    private final RuleGroup group;
+
+    /**
+     * 打包模式下规则所在的agenda group，执行前需激活，独立编译时为空
+     */
+    @Getter
+    private final String agendaGroup;
+
+    /**
+     * 预估占用内存，字节
+     */
+    @Getter
+    private final long footprint;
+
+    /**
+     * session池，首次使用POOLED模式时创建
+     */
+    private volatile KieSessionsPool pool;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicBoolean disposed = new AtomicBoolean();
+
+    private volatile boolean retired;
+
+    public RuleContainer(Rule rule,
+                         long version,
+                         KieBase kieBase,
+                         KieContainer kieContainer,
+                         RuleOptions options,
+                         Map<String, Object> globals,
+                         List<FactBinding> factBindings) {
+        this(rule, version, kieBase, kieContainer, options, globals, factBindings, null, null);
+    }
+
+    public RuleContainer(Rule rule,
+                         long version,
+                         KieBase kieBase,
+                         KieContainer kieContainer,
+                         RuleOptions options,
+                         Map<String, Object> globals,
+                         List<FactBinding> factBindings,
+                         RuleGroup group,
+                         String agendaGroup) {
+        this.id = rule.getId();
+        this.name = rule.getName();
+        this.updateTime = rule.getUpdateTime();
+        this.digest = digestOf(rule.getRuleText());
+        this.version = version;
+        this.kieBase = kieBase;
+        this.kieContainer = kieContainer;
+        this.options = options;
+        this.globals = globals;
+        this.factBindings = factBindings;
+        this.group = group;
+        this.agendaGroup = agendaGroup;
+        this.footprint = estimateFootprint(rule.getRuleText());
+    }
+
+
+    /**
+     * 规则文本摘要
+     *
+     * @param ruleText  规则文本
+     * @return          摘要
+     */
+    public static String digestOf(String ruleText) {
+        return ruleText == null ? null : DigestUtils.md5DigestAsHex(ruleText.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * 新建有状态session
+     *
+     * @return session
+     */
+    public KieSession newKieSession() {
+        return kieBase.newKieSession();
+    }
+
+
+    /**
+     * 新建无状态session
+     *
+     * @return session
+     */
+    public StatelessKieSession newStatelessKieSession() {
+        return kieBase.newStatelessKieSession();
+    }
+
+
+    /**
+     * 从session池中借用session，调用dispose后重置并归还
+     * 没有KieContainer时无法建池，退化为新建session
+     *
+     * @return session
+     */
+    public KieSession newPooledSession() {
+        if (kieContainer == null) {
+            return newKieSession();
+        }
+
+        KieSessionsPool current = pool;
+
+        if (current == null) {
+            synchronized (this) {
+                current = pool;
+                if (current == null) {
+                    current = kieContainer.newKieSessionsPool(options.getPoolSize());
+                    pool = current;
+                }
+            }
+        }
+
+        return current.newKieSession();
+    }
+
+
+    /**
+     * 占用容器，已下线的容器占用失败
+     *
+     * @return 是否占用成功
+     */
+    public boolean tryAcquire() {
+        inFlight.incrementAndGet();
+
+        if (retired) {
+            release();
+            return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * 释放占用，下线后最后一个请求负责销毁容器
+     */
+    public void release() {
+        if (inFlight.decrementAndGet() == 0 && retired) {
+            dispose();
+        }
+    }
+
+
+    /**
+     * 下线容器，不再接受新请求，在途请求结束后销毁
+     */
+    public void retire() {
+        retired = true;
+
+        if (inFlight.get() == 0) {
+            dispose();
+        }
+    }
+
+
+    /**
+     * 缓存权重，以KB为单位的预估内存
+     *
+     * @return 权重
+     */
+    public int getWeight() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, footprint / 1024));
+    }
+
+
+    /**
+     * 预估占用内存：KieBase固定开销、Rete节点数、规则数和DRL长度，
+     * 打包模式下共享KieBase的固定开销和节点不计入单个规则
+     *
+     * @param ruleText  规则文本
+     * @return          字节
+     */
+    private long estimateFootprint(String ruleText) {
+        long size = ruleText == null ? 0 : (long) ruleText.length() * DRL_CHAR_BYTES;
+
+        if (group == null) {
+            int rules = kieBase.getKiePackages().stream().mapToInt(p -> p.getRules().size()).sum();
+            int nodes = kieBase instanceof InternalKnowledgeBase ? ((InternalKnowledgeBase) kieBase).getNodeCount() : 0;
+            return KIE_BASE_BYTES + (long) nodes * NODE_BYTES + (long) rules * RULE_BYTES + size;
+        }
+
+        KiePackage kiePackage = kieBase.getKiePackage(agendaGroup);
+        int rules = kiePackage == null ? 0 : kiePackage.getRules().size();
+        return (long) rules * (RULE_BYTES + NODE_BYTES * PACKED_NODES_PER_RULE) + size;
+    }
+
+
+    /**
+     * 当前在途请求数
+     *
+     * @return 数量
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+
+    /**
+     * 是否已下线
+     *
+     * @return 是否下线
+     */
+    public boolean isRetired() {
+        return retired;
+    }
+
+
+    /**
+     * 是否已销毁
+     *
+     * @return 是否销毁
+     */
+    public boolean isDisposed() {
+        return disposed.get();
+    }
+
+
+    private void dispose() {
+        if (disposed.compareAndSet(false, true)) {
+            log.debug("- dispose rule container: {}, version: {}", id, version);
+
+            KieSessionsPool current = pool;
+            if (current != null) {
+                current.shutdown();
+            }
+            if (kieContainer != null) {
+                kieContainer.dispose();
+            }
+            if (group != null) {
+                group.remove(agendaGroup);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RuleContainer{id=" + id + ", name=" + name + ", version=" + version + "}";
+    }
+}
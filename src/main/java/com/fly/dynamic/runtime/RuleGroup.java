@@ -0,0 +1,76 @@
+package com.fly.dynamic.runtime;
+
+import lombok.extern.slf4j.Slf4j;
+import org.drools.core.impl.InternalKnowledgeBase;
+import org.drools.core.impl.KnowledgeBaseFactory;
+import org.kie.api.KieBase;
+import org.kie.api.definition.KiePackage;
+
+import java.util.Collection;
+
+/**
+ * 打包模式下多个规则共享的KieBase，每个规则的每个版本编译为独立的包，
+ * 包名同时作为agenda group，执行时只激活目标规则的agenda group
+ * <p>
+ * 规则更新时只增删对应的包，不重建整个KieBase；
+ * 旧版本的包在旧容器的在途请求结束后删除
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/6
+ */
+@Slf4j
+public class RuleGroup {
+
+    private final int index;
+
+    private final InternalKnowledgeBase kieBase = KnowledgeBaseFactory.newKnowledgeBase();
+
+    public RuleGroup(int index) {
+        this.index = index;
+    }
+
+
+    public KieBase getKieBase() {
+        return kieBase;
+    }
+
+
+    /**
+     * 增加编译好的包
+     *
+     * @param packages  包
+     */
+    public synchronized void add(Collection<KiePackage> packages) {
+        kieBase.addPackages(packages);
+    }
+
+
+    /**
+     * 删除包，包不存在时忽略
+     *
+     * @param packageName   包名
+     */
+    public synchronized void remove(String packageName) {
+        if (kieBase.getKiePackage(packageName) != null) {
+            kieBase.removeKiePackage(packageName);
+            log.debug("- remove package {} from rule group {}", packageName, index);
+        }
+    }
+
+
+    /**
+     * 当前包数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        return kieBase.getKiePackages().size();
+    }
+
+
+    @Override
+    public String toString() {
+        return "RuleGroup{index=" + index + "}";
+    }
+}
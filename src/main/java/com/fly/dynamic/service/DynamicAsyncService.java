@@ -0,0 +1,102 @@
+package com.fly.dynamic.service;
+
+import com.fly.dynamic.config.DynamicRuleProperties;
+import com.fly.dynamic.entity.RuleResult;
+import com.fly.dynamic.runtime.ExecutionMode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 异步执行规则，在独立线程池中执行，不占用servlet线程
+ * <p>
+ * 线程池只在本类内部使用，不注册为bean，不影响应用自身的@Async和默认线程池
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/5
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DynamicAsyncService {
+
+    private final DynamicService dynamicService;
+
+    private final DynamicRuleProperties properties;
+
+    /**
+     * 异步执行线程池，队列满时拒绝
+     */
+    private ExecutorService executor;
+
+
+    @PostConstruct
+    public void init() {
+        DynamicRuleProperties.Async async = properties.getAsync();
+
+        if (async.isVirtualThreads()) {
+            executor = newVirtualThreadExecutor();
+            if (executor != null) {
+                log.info("- dynamic rule async executor: virtual threads");
+                return;
+            }
+
+            log.warn("- virtual threads require JDK 21+, fallback to thread pool");
+        }
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(async.getPoolSize(), async.getPoolSize(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(async.getQueueCapacity()),
+                new CustomizableThreadFactory("rule-async-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+    }
+
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+
+    public CompletableFuture<RuleResult> handleById(Long id, Map<String, Object> param, ExecutionMode mode) {
+        return CompletableFuture.supplyAsync(() -> dynamicService.handleById(id, param, mode), executor);
+    }
+
+
+    public CompletableFuture<RuleResult> handleByName(String name, Map<String, Object> param, ExecutionMode mode) {
+        return CompletableFuture.supplyAsync(() -> dynamicService.handleByName(name, param, mode), executor);
+    }
+
+
+    public CompletableFuture<RuleResult> handleRawById(Long id, byte[] body, ExecutionMode mode) {
+        return CompletableFuture.supplyAsync(() -> dynamicService.handleRawById(id, body, mode), executor);
+    }
+
+
+    public CompletableFuture<RuleResult> handleRawByName(String name, byte[] body, ExecutionMode mode) {
+        return CompletableFuture.supplyAsync(() -> dynamicService.handleRawByName(name, body, mode), executor);
+    }
+
+
+    /**
+     * 通过反射创建虚拟线程池，兼容低版本JDK编译
+     *
+     * @return 线程池，不支持虚拟线程时返回null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -1,34 +1,143 @@
 package com.fly.dynamic.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fly.dynamic.common.RuleMetrics;
+import com.fly.dynamic.config.DynamicRuleProperties;
+import com.fly.dynamic.config.RuleOptions;
 import com.fly.dynamic.entity.RuleResult;
+import com.fly.dynamic.runtime.ExecutionGuard;
+import com.fly.dynamic.runtime.ExecutionMode;
+import com.fly.dynamic.runtime.FactBinding;
+import com.fly.dynamic.runtime.RuleBulkhead;
+import com.fly.dynamic.runtime.RuleContainer;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
-import org.kie.api.definition.KiePackage;
-import org.kie.api.definition.type.FactType;
+import lombok.extern.slf4j.Slf4j;
+import org.kie.api.KieServices;
+import org.kie.api.command.Command;
+import org.kie.api.command.KieCommands;
+import org.kie.api.runtime.ExecutionResults;
 import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.StatelessKieSession;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
 
-import java.util.Collection;
-import java.util.Map;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.fly.dynamic.common.RuleErrorMessage.*;
 
 /**
  * @author guoxiang
  * @version 1.0.0
  * @since 2021/7/28
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class DynamicService {
 
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    private static final String FIRED = "fired";
+
     private final RuleService ruleService;
 
     private final ObjectMapper objectMapper;
 
+    private final DynamicRuleProperties properties;
+
+    private final RuleMetrics metrics;
+
+    private final RuleProfiler profiler;
+
+    private final RuleResultCache resultCache;
+
+    private final RuleBulkheadRegistry bulkheads;
+
+    /**
+     * 原始请求体转map
+     */
+    private ObjectReader mapReader;
+
+    /**
+     * 流式输出结果，不关闭输出流
+     */
+    private ObjectWriter resultWriter;
+
+    /**
+     * 批量执行线程池，队列满时由调用线程执行
+     */
+    private ThreadPoolExecutor batchExecutor;
+
+    /**
+     * 看门狗，有状态session执行超时后调用halt
+     */
+    private ScheduledThreadPoolExecutor watchdog;
+
+    /**
+     * 正在执行的可合并请求，执行结束即移除，不做长期缓存
+     */
+    private final Map<RuleResultCache.Key, CompletableFuture<RuleResult>> pending = new ConcurrentHashMap<>();
+
+
+    @PostConstruct
+    public void init() {
+        mapReader = objectMapper.readerFor(MAP_TYPE);
+        resultWriter = objectMapper.writerFor(RuleResult.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        DynamicRuleProperties.Batch batch = properties.getBatch();
+        batchExecutor = new ThreadPoolExecutor(batch.getPoolSize(), batch.getPoolSize(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(batch.getQueueCapacity()),
+                new CustomizableThreadFactory("rule-batch-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        batchExecutor.allowCoreThreadTimeOut(true);
+
+        watchdog = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("rule-watchdog-"));
+        watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+
+    @PreDestroy
+    public void destroy() {
+        batchExecutor.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
     public RuleResult handleById(Long id, Map<String, Object> param) {
-        //从缓存中获取session
-        KieSession session = ruleService.getSessionById(id);
+        return handleById(id, param, null);
+    }
+
 
-        return handle(session, param);
+    /**
+     * 根据id处理
+     *
+     * @param id    id
+     * @param param param
+     * @param mode  执行模式，为空时使用规则配置
+     * @return      结果
+     */
+    public RuleResult handleById(Long id, Map<String, Object> param, ExecutionMode mode) {
+        //从缓存中获取规则容器
+        RuleContainer container = ruleService.acquireById(id);
+
+        return handle(container, param, mode);
     }
 
 
@@ -40,62 +149,609 @@ public class DynamicService {
      * @return      结果
      */
     public RuleResult handleByName(String name, Map<String, Object> param) {
-        //从缓存中获取session
-        KieSession session = ruleService.getSessionByName(name);
-
-        return handle(session, param);
+        return handleByName(name, param, null);
     }
 
 
     /**
-     * 处理规则
+     * 根据名称处理
      *
-     * @param session   session
+     * @param name  name
      * @param param param
-     * @return      result
+     * @param mode  执行模式，为空时使用规则配置
+     * @return      结果
+     */
+    public RuleResult handleByName(String name, Map<String, Object> param, ExecutionMode mode) {
+        //从缓存中获取规则容器
+        RuleContainer container = ruleService.acquireByName(name);
+
+        return handle(container, param, mode);
+    }
+
+
+    /**
+     * 根据id处理原始请求体，直接反序列化为规则中声明的事实类型
+     *
+     * @param id    id
+     * @param body  json请求体
+     * @param mode  执行模式，为空时使用规则配置
+     * @return      结果
+     */
+    public RuleResult handleRawById(Long id, byte[] body, ExecutionMode mode) {
+        RuleContainer container = ruleService.acquireById(id);
+
+        return handleRaw(container, body, mode);
+    }
+
+
+    /**
+     * 根据名称处理原始请求体，直接反序列化为规则中声明的事实类型
+     *
+     * @param name  name
+     * @param body  json请求体
+     * @param mode  执行模式，为空时使用规则配置
+     * @return      结果
+     */
+    public RuleResult handleRawByName(String name, byte[] body, ExecutionMode mode) {
+        RuleContainer container = ruleService.acquireByName(name);
+
+        return handleRaw(container, body, mode);
+    }
+
+
+    /**
+     * 根据id批量处理，所有参数共用同一个规则容器并行执行
+     *
+     * @param id        id
+     * @param params    参数列表
+     * @param mode      执行模式，为空时使用规则配置
+     * @return          结果列表，与参数一一对应
+     */
+    public List<RuleResult> handleBatchById(Long id, List<Map<String, Object>> params, ExecutionMode mode) {
+        checkBatchSize(params);
+        if (params.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        RuleContainer container = ruleService.acquireById(id);
+
+        return handleBatch(container, params, mode);
+    }
+
+
+    /**
+     * 根据名称批量处理，所有参数共用同一个规则容器并行执行
+     *
+     * @param name      name
+     * @param params    参数列表
+     * @param mode      执行模式，为空时使用规则配置
+     * @return          结果列表，与参数一一对应
+     */
+    public List<RuleResult> handleBatchByName(String name, List<Map<String, Object>> params, ExecutionMode mode) {
+        checkBatchSize(params);
+        if (params.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        RuleContainer container = ruleService.acquireByName(name);
+
+        return handleBatch(container, params, mode);
+    }
+
+
+    /**
+     * 批量处理，全部完成后释放对容器的占用
+     *
+     * @param container 已占用的规则容器
+     * @param params    参数列表
+     * @param mode      执行模式
+     * @return          结果列表
+     */
+    private List<RuleResult> handleBatch(RuleContainer container, List<Map<String, Object>> params, ExecutionMode mode) {
+        try {
+            List<CompletableFuture<RuleResult>> futures = params.stream()
+                    .map(param -> CompletableFuture.supplyAsync(() -> evaluate(container, param, mode), batchExecutor))
+                    .collect(Collectors.toList());
+
+            return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        } finally {
+            container.release();
+        }
+    }
+
+
+    /**
+     * 执行单条参数，异常转为失败结果，不影响同批其他参数
+     *
+     * @param container 规则容器
+     * @param param     param
+     * @param mode      执行模式
+     * @return          result
+     */
+    private RuleResult evaluate(RuleContainer container, Map<String, Object> param, ExecutionMode mode) {
+        try {
+            return execute(container, param, () -> generateDynamicParam(container, param), mode);
+        } catch (Exception e) {
+            log.error("- rule exception: {}", container, e);
+            return RuleResult.fail(e.getMessage());
+        }
+    }
+
+
+    /**
+     * 根据id流式处理，逐行读取json参数，按输入顺序逐行输出结果
+     *
+     * @param id    id
+     * @param in    换行分隔的json参数
+     * @param out   换行分隔的json结果
+     * @param mode  执行模式，为空时使用规则配置
+     * @throws IOException 读写异常
+     */
+    public void handleStreamById(Long id, InputStream in, OutputStream out, ExecutionMode mode) throws IOException {
+        handleStream(() -> ruleService.acquireById(id), in, out, mode);
+    }
+
+
+    /**
+     * 根据名称流式处理，逐行读取json参数，按输入顺序逐行输出结果
+     *
+     * @param name  name
+     * @param in    换行分隔的json参数
+     * @param out   换行分隔的json结果
+     * @param mode  执行模式，为空时使用规则配置
+     * @throws IOException 读写异常
+     */
+    public void handleStreamByName(String name, InputStream in, OutputStream out, ExecutionMode mode) throws IOException {
+        handleStream(() -> ruleService.acquireByName(name), in, out, mode);
+    }
+
+
+    /**
+     * 流式处理，同时执行的记录数有上限，读取速度受执行和输出速度约束，内存占用与输入大小无关
+     * 规则或参数错误以失败结果的形式写入输出流
+     *
+     * @param acquire   占用规则容器
+     * @param in        输入流
+     * @param out       输出流
+     * @param mode      执行模式
+     * @throws IOException 读写异常
+     */
+    private void handleStream(Supplier<RuleContainer> acquire,
+                              InputStream in,
+                              OutputStream out,
+                              ExecutionMode mode) throws IOException {
+        final RuleContainer container;
+        try {
+            container = acquire.get();
+        } catch (RuntimeException e) {
+            log.error("- rule exception", e);
+            writeLine(RuleResult.fail(e.getMessage()), out);
+            return;
+        }
+
+        int maxInFlight = properties.getStream().getMaxInFlight();
+        Deque<CompletableFuture<RuleResult>> window = new ArrayDeque<>(maxInFlight);
+
+        try (MappingIterator<Map<String, Object>> iterator = mapReader.readValues(in)) {
+            while (iterator.hasNextValue()) {
+                Map<String, Object> param = iterator.nextValue();
+
+                //窗口已满，先输出最早的结果
+                if (window.size() >= maxInFlight) {
+                    writeLine(poll(window, out), out);
+                }
+
+                window.add(CompletableFuture.supplyAsync(() -> evaluate(container, param, mode), batchExecutor));
+            }
+
+            while (!window.isEmpty()) {
+                writeLine(poll(window, out), out);
+            }
+        } catch (JsonProcessingException e) {
+            //已读取的记录照常输出，再输出参数错误
+            while (!window.isEmpty()) {
+                writeLine(poll(window, out), out);
+            }
+            writeLine(RuleResult.fail(PARAM_ERROR + e.getOriginalMessage()), out);
+        } finally {
+            //客户端断开时等在途记录执行完再释放容器
+            window.forEach(future -> future.handle((result, e) -> result).join());
+            container.release();
+        }
+
+        out.flush();
+    }
+
+
+    /**
+     * 取出最早的结果，需要等待时先把已输出的内容刷给客户端
+     *
+     * @param window    执行窗口
+     * @param out       输出流
+     * @return          结果
+     * @throws IOException 写异常
+     */
+    private static RuleResult poll(Deque<CompletableFuture<RuleResult>> window, OutputStream out) throws IOException {
+        CompletableFuture<RuleResult> head = window.poll();
+
+        if (!head.isDone()) {
+            out.flush();
+        }
+
+        return head.join();
+    }
+
+
+    /**
+     * 输出一行结果
+     *
+     * @param result    结果
+     * @param out       输出流
+     * @throws IOException 写异常
+     */
+    private void writeLine(RuleResult result, OutputStream out) throws IOException {
+        resultWriter.writeValue(out, result);
+        out.write('\n');
+    }
+
+
+    /**
+     * 校验批量参数数量
+     *
+     * @param params 参数列表
+     */
+    private void checkBatchSize(List<Map<String, Object>> params) {
+        Assert.notNull(params, PARAM_ERROR);
+        Assert.isTrue(params.size() <= properties.getBatch().getMaxSize(), BATCH_SIZE_ERROR);
+    }
+
+
+    /**
+     * 处理规则，结束后释放对容器的占用
+     *
+     * @param container 已占用的规则容器
+     * @param param     param
+     * @param mode      执行模式
+     * @return          result
+     */
+    private RuleResult handle(RuleContainer container, Map<String, Object> param, ExecutionMode mode) {
+        try {
+            //接收参数，并转为动态参数
+            return execute(container, param, () -> generateDynamicParam(container, param), mode);
+        } finally {
+            container.release();
+        }
+    }
+
+
+    /**
+     * 处理原始请求体，结束后释放对容器的占用
+     *
+     * @param container 已占用的规则容器
+     * @param body      json请求体
+     * @param mode      执行模式
+     * @return          result
      */
-    private RuleResult handle(KieSession session, Map<String, Object> param) {
-        //接收参数，并转为动态参数
-        generateDynamicParam(session, param);
+    private RuleResult handleRaw(RuleContainer container, byte[] body, ExecutionMode mode) {
+        try {
+            Map<String, Object> param = read(mapReader, body);
+
+            return execute(container, param, () -> metrics.recordConversion(container, () -> {
+                List<Object> values = new ArrayList<>();
+                for (FactBinding binding : container.getFactBindings()) {
+                    values.add(read(binding.getReader(), body));
+                }
+                return values;
+            }), mode);
+        } finally {
+            container.release();
+        }
+    }
+
+
+    /**
+     * 执行规则，开启结果缓存的规则先查缓存，命中时不再转换参数和执行；
+     * 开启请求合并的规则，相同参数的并发请求只执行一次，其余请求等待并共享结果
+     *
+     * @param container 规则容器
+     * @param param     param
+     * @param facts     动态参数，未命中缓存时才转换
+     * @param mode      执行模式
+     * @return          result
+     */
+    private RuleResult execute(RuleContainer container,
+                               Map<String, Object> param,
+                               Supplier<List<Object>> facts,
+                               ExecutionMode mode) {
+        RuleOptions options = container.getOptions();
+        boolean cache = options.getResultCache();
+        boolean coalesce = options.getCoalesce();
+
+        RuleResultCache.Key key = cache || coalesce ? resultCache.keyOf(container, param) : null;
+        if (key == null) {
+            return executeInBulkhead(container, param, facts, mode);
+        }
+
+        if (cache) {
+            RuleResult cached = resultCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        if (!coalesce) {
+            RuleResult result = executeInBulkhead(container, param, facts, mode);
+            resultCache.put(key, result);
+            return result;
+        }
+
+        CompletableFuture<RuleResult> future = new CompletableFuture<>();
+        CompletableFuture<RuleResult> leader = pending.putIfAbsent(key, future);
+        if (leader != null) {
+            return resultCache.copyOf(join(leader));
+        }
+
+        try {
+            RuleResult result = executeInBulkhead(container, param, facts, mode);
+            if (cache) {
+                resultCache.put(key, result);
+            }
+
+            //等待的请求各自由快照还原副本，不与本请求共享data；无法生成快照时共享原结果
+            RuleResult snapshot = resultCache.snapshot(result);
+            future.complete(snapshot != null ? snapshot : result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            pending.remove(key, future);
+        }
+    }
+
+
+    /**
+     * 等待合并请求的结果，异常原样抛出
+     *
+     * @param future    future
+     * @return          结果
+     */
+    private static RuleResult join(CompletableFuture<RuleResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
 
+
+    /**
+     * 在规则的并发隔离内执行，并发和排队已满时直接拒绝；
+     * 占用名额后才转换参数，被拒绝的请求不做转换
+     *
+     * @param container 规则容器
+     * @param param     param
+     * @param facts     动态参数
+     * @param mode      执行模式
+     * @return          result
+     */
+    private RuleResult executeInBulkhead(RuleContainer container,
+                                         Map<String, Object> param,
+                                         Supplier<List<Object>> facts,
+                                         ExecutionMode mode) {
+        RuleBulkhead bulkhead = bulkheads.get(container);
+        if (bulkhead == null) {
+            return doExecute(container, param, facts.get(), mode);
+        }
+
+        if (!bulkhead.tryAcquire()) {
+            metrics.recordRejected(container);
+            return RuleResult.fail(RuleResult.REJECTED, BULKHEAD_FULL_ERROR);
+        }
+
+        try {
+            return doExecute(container, param, facts.get(), mode);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+
+    /**
+     * 按执行模式执行规则，超时或触发次数达到上限时中止执行并返回对应错误码
+     *
+     * @param container 规则容器
+     * @param param     param
+     * @param facts     动态参数
+     * @param mode      执行模式
+     * @return          result
+     */
+    private RuleResult doExecute(RuleContainer container, Map<String, Object> param, List<Object> facts, ExecutionMode mode) {
+        RuleOptions options = container.getOptions();
+        ExecutionMode executionMode = mode != null ? mode : options.getExecutionMode();
         RuleResult result = new RuleResult().setCode(0);
 
+        long timeout = options.getTimeout() == null ? 0 : options.getTimeout().toNanos();
+        int maxFires = options.getMaxFires() == null ? 0 : options.getMaxFires();
+        ExecutionGuard guard = timeout > 0 || maxFires > 0 ? new ExecutionGuard(timeout, maxFires) : null;
+
+        Timer.Sample sample = metrics.start();
+        String outcome = RuleMetrics.ERROR;
+
+        try {
+            int fired;
+            switch (executionMode) {
+                case STATELESS:
+                    fired = fire(ruleService.newStatelessSession(container), container, param, facts, result, guard);
+                    break;
+                case POOLED:
+                    fired = fire(ruleService.newPooledSession(container), param, facts, result, guard, timeout);
+                    break;
+                default:
+                    fired = fire(ruleService.newSession(container), param, facts, result, guard, timeout);
+            }
+
+            metrics.recordFired(container, fired);
+
+            if (guard != null && guard.isTimedOut()) {
+                log.warn("- rule execution timeout: {}, fired: {}", container, fired);
+                outcome = RuleMetrics.TIMEOUT;
+                return RuleResult.fail(RuleResult.TIMEOUT, TIMEOUT_ERROR);
+            }
+            if (guard != null && guard.isLimited()) {
+                log.warn("- rule fire limit reached: {}, fired: {}", container, fired);
+                outcome = RuleMetrics.FIRE_LIMIT;
+                return RuleResult.fail(RuleResult.FIRE_LIMIT, FIRE_LIMIT_ERROR);
+            }
+
+            outcome = RuleMetrics.SUCCESS;
+        } finally {
+            metrics.recordExecution(container, executionMode, sample, outcome);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * 处理规则
+     *
+     * @param session   session
+     * @param param     param
+     * @param facts     动态参数
+     * @param result    result
+     * @param guard     超时和触发次数保护，都不限制时为空
+     * @param timeout   超时时间，纳秒，0表示不限时
+     * @return          触发的规则数
+     */
+    private int fire(KieSession session,
+                     Map<String, Object> param,
+                     List<Object> facts,
+                     RuleResult result,
+                     ExecutionGuard guard,
+                     long timeout) {
+        ScheduledFuture<?> expire = null;
+
         //执行规则引擎
         try {
+            if (guard != null) {
+                session.addEventListener(guard);
+            }
+            if (timeout > 0) {
+                expire = watchdog.schedule(() -> guard.expire(session), timeout, TimeUnit.NANOSECONDS);
+            }
+
+            facts.forEach(session::insert);
+
             session.insert(param);
             session.insert(result);
-            session.fireAllRules();
+            return session.fireAllRules();
         } finally {
+            if (expire != null) {
+                expire.cancel(false);
+            }
+            if (guard != null) {
+                //等待已经开始的看门狗halt完成，之后session才能归还到池中
+                guard.finish();
+                session.removeEventListener(guard);
+            }
+
+            profiler.detach(session);
             session.dispose();
         }
+    }
 
-        return result;
+
+    /**
+     * 使用无状态session处理规则，所有事实一次性插入并执行
+     *
+     * @param session   session
+     * @param container 规则容器
+     * @param param     param
+     * @param facts     动态参数
+     * @param result    result
+     * @param guard     超时和触发次数保护，都不限制时为空
+     * @return          触发的规则数
+     */
+    private int fire(StatelessKieSession session,
+                     RuleContainer container,
+                     Map<String, Object> param,
+                     List<Object> facts,
+                     RuleResult result,
+                     ExecutionGuard guard) {
+        List<Object> all = new ArrayList<>(ruleService.getInfrastructureFacts(container));
+        all.addAll(facts);
+        all.add(param);
+        all.add(result);
+
+        if (guard != null) {
+            session.addEventListener(guard);
+        }
+
+        KieCommands commands = KieServices.Factory.get().getCommands();
+        List<Command<?>> batch = new ArrayList<>();
+
+        //打包模式只激活目标规则的agenda group
+        if (container.getAgendaGroup() != null) {
+            batch.add(commands.newAgendaGroupSetFocus(container.getAgendaGroup()));
+        }
+        batch.add(commands.newInsertElements(all));
+        batch.add(commands.newFireAllRules(FIRED));
+
+        ExecutionResults results = session.execute(commands.newBatchExecution(batch));
+
+        Object fired = results.getValue(FIRED);
+        return fired instanceof Integer ? (Integer) fired : 0;
     }
 
+
     /**
      * 这里使用jackson进行赋值，支持更多数据类型
      * 传统赋值方式如下，只支持基本数据类型：
      * Object o = factType.newInstance();
      * factType.setFromMap(o, param);
      *
-     * @param session   session
+     * 事实类型在规则编译时已解析，见{@link RuleContainer#getFactBindings()}
+     *
+     * @param container 规则容器
      * @param param param
+     * @return      动态参数
      */
-    private void generateDynamicParam(KieSession session, Map<String, Object> param) {
+    private List<Object> generateDynamicParam(RuleContainer container, Map<String, Object> param) {
+        return metrics.recordConversion(container, () -> {
+            List<Object> values = new ArrayList<>();
 
-        Collection<KiePackage> packages = session.getKieBase().getKiePackages();
-        KiePackage kiePackage = packages.stream().filter(p -> !p.getRules().isEmpty()).findFirst().orElse(null);
+            for (FactBinding binding : container.getFactBindings()) {
+                Object value = objectMapper.convertValue(param, binding.getFactClass());
+                values.add(value);
+            }
 
-        if (kiePackage == null) {
-            return;
-        }
+            return values;
+        });
+    }
 
-        Collection<FactType> factTypes = kiePackage.getFactTypes();
-        for (FactType factType : factTypes) {
-            Object value = objectMapper.convertValue(param, factType.getFactClass());
-            session.insert(value);
-        }
 
+    /**
+     * 反序列化请求体
+     *
+     * @param reader    reader
+     * @param body      请求体
+     * @param <T>       类型
+     * @return          结果
+     */
+    private static <T> T read(ObjectReader reader, byte[] body) {
+        try {
+            return reader.readValue(body);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(PARAM_ERROR + e.getMessage(), e);
+        }
     }
 
 
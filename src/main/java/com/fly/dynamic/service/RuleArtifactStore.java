@@ -0,0 +1,288 @@
+package com.fly.dynamic.service;
+
+import com.fly.dynamic.config.DynamicRuleProperties;
+import com.fly.dynamic.entity.Rule;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.drools.core.util.Drools;
+import org.drools.core.util.DroolsStreamUtils;
+import org.kie.api.KieBase;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * 规则编译产物缓存，将编译好的KieBase序列化到本地磁盘，
+ * 重启后规则未变化时直接加载，避免重新编译DRL
+ * <p>
+ * 每个规则一个文件，文件头记录格式版本和缓存键，缓存键包含drools版本、应用classpath指纹、
+ * 规则更新时间和内容摘要，任意一项不一致即视为失效
+ * <p>
+ * 加载时会反序列化文件内容，缓存目录只允许当前用户访问，
+ * 目录或文件不属于当前用户、或其他用户可写时拒绝使用
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/4
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RuleArtifactStore {
+
+    private static final int MAGIC = 0x44524B42;
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = EnumSet.of(
+            PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE);
+
+    private final DynamicRuleProperties properties;
+
+    /**
+     * 缓存目录，校验通过后才赋值，为空时不读写缓存
+     */
+    private volatile Path directory;
+
+    /**
+     * 应用classpath指纹，应用升级后旧的编译产物失效
+     */
+    private String fingerprint;
+
+
+    @PostConstruct
+    public void init() {
+        if (!properties.getArtifact().isEnabled()) {
+            return;
+        }
+
+        Path dir = Paths.get(properties.getArtifact().getDirectory()).toAbsolutePath();
+        try {
+            prepareDirectory(dir);
+            fingerprint = classpathFingerprint();
+            directory = dir;
+            log.info("- rule artifact directory: {}", dir);
+        } catch (IOException | RuntimeException e) {
+            log.warn("- rule artifact directory unusable, artifact cache disabled: {}", dir, e);
+        }
+    }
+
+
+    /**
+     * 加载规则编译产物
+     *
+     * @param rule  规则
+     * @return      kieBase，未启用、不存在或已失效时返回null
+     */
+    public KieBase load(Rule rule) {
+        if (directory == null) {
+            return null;
+        }
+
+        Path path = pathOf(rule.getId());
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return null;
+        }
+
+        if (!isPrivate(path)) {
+            log.warn("- rule artifact is not owner-only, ignored: {}", path);
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path, LinkOption.NOFOLLOW_LINKS)))) {
+            if (in.readInt() != MAGIC
+                    || in.readInt() != FORMAT_VERSION
+                    || !keyOf(rule).equals(in.readUTF())) {
+                log.debug("- rule artifact expired: {}", rule.getId());
+                return null;
+            }
+
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+
+            return (KieBase) DroolsStreamUtils.streamIn(bytes, RuleArtifactStore.class.getClassLoader());
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            log.warn("- load rule artifact error, recompile: {}", rule.getId(), e);
+            delete(rule.getId());
+            return null;
+        }
+    }
+
+
+    /**
+     * 保存规则编译产物，先写临时文件再原子替换
+     *
+     * @param rule      规则
+     * @param kieBase   编译好的kieBase
+     */
+    public void save(Rule rule, KieBase kieBase) {
+        if (directory == null) {
+            return;
+        }
+
+        Path path = pathOf(rule.getId());
+
+        try {
+            byte[] bytes = DroolsStreamUtils.streamOut(kieBase);
+
+            Path temp = Files.createTempFile(directory, "rule-", ".tmp");
+            restrict(temp, EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(keyOf(rule));
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("- save rule artifact: {}, size: {}", rule.getId(), bytes.length);
+        } catch (IOException | RuntimeException e) {
+            log.warn("- save rule artifact error: {}", rule.getId(), e);
+        }
+    }
+
+
+    /**
+     * 删除规则编译产物
+     *
+     * @param id    id
+     */
+    public void delete(Long id) {
+        if (directory == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(pathOf(id));
+        } catch (IOException e) {
+            log.warn("- delete rule artifact error: {}", id, e);
+        }
+    }
+
+
+    private Path pathOf(Long id) {
+        return directory.resolve("rule-" + id + ".kbase");
+    }
+
+
+    /**
+     * 缓存键：drools版本、classpath指纹、规则id、更新时间（秒）和规则文本摘要
+     *
+     * @param rule  规则
+     * @return      key
+     */
+    private String keyOf(Rule rule) {
+        LocalDateTime updateTime = rule.getUpdateTime();
+        String time = updateTime == null ? "" : updateTime.truncatedTo(ChronoUnit.SECONDS).toString();
+        String digest = DigestUtils.md5DigestAsHex(rule.getRuleText().getBytes(StandardCharsets.UTF_8));
+
+        return Drools.getFullVersion() + ":" + fingerprint + ":" + rule.getId() + ":" + time + ":" + digest;
+    }
+
+
+    /**
+     * 创建缓存目录并限制为只有当前用户可访问，已存在的目录必须属于当前用户且其他用户不可写
+     *
+     * @param dir   缓存目录
+     */
+    private static void prepareDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            if (isPosix(dir.getParent())) {
+                Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+            } else {
+                Files.createDirectories(dir);
+            }
+        }
+
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException("not a directory: " + dir);
+        }
+
+        restrict(dir, OWNER_ONLY);
+        if (!isPrivate(dir)) {
+            throw new IOException("directory is not owned by current user or writable by others: " + dir);
+        }
+    }
+
+
+    /**
+     * 文件属于当前用户，且同组和其他用户不可写；不支持POSIX权限的文件系统只校验所有者
+     *
+     * @param path  路径
+     * @return      是否私有
+     */
+    private static boolean isPrivate(Path path) {
+        try {
+            UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+            UserPrincipal current = path.getFileSystem().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!owner.equals(current)) {
+                return false;
+            }
+
+            if (!isPosix(path)) {
+                return true;
+            }
+
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS);
+            return !permissions.contains(PosixFilePermission.GROUP_WRITE)
+                    && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("- check rule artifact permission error: {}", path, e);
+            return false;
+        }
+    }
+
+
+    private static void restrict(Path path, Set<PosixFilePermission> permissions) throws IOException {
+        if (isPosix(path)) {
+            Files.setPosixFilePermissions(path, permissions);
+        }
+    }
+
+
+    private static boolean isPosix(Path path) {
+        return path != null && path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+
+    /**
+     * classpath指纹：每个classpath条目的路径、大小和修改时间的摘要，目录条目取其中全部文件，
+     * 应用重新打包或依赖变化后指纹随之变化
+     *
+     * @return  指纹
+     */
+    private static String classpathFingerprint() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            Path path = Paths.get(entry);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    files.filter(Files::isRegularFile).sorted().forEach(file -> append(builder, file));
+                }
+            } else if (Files.exists(path)) {
+                append(builder, path);
+            }
+        }
+
+        return DigestUtils.md5DigestAsHex(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    private static void append(StringBuilder builder, Path file) {
+        File f = file.toFile();
+        builder.append(f.getPath()).append(':').append(f.length()).append(':').append(f.lastModified()).append('\n');
+    }
+}
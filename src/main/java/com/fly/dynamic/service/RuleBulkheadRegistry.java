@@ -0,0 +1,90 @@
+package com.fly.dynamic.service;
+
+import com.fly.dynamic.common.RuleMetrics;
+import com.fly.dynamic.config.RuleOptions;
+import com.fly.dynamic.runtime.RuleBulkhead;
+import com.fly.dynamic.runtime.RuleContainer;
+import io.micrometer.core.instrument.Meter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 规则并发隔离，按规则id保存，首次执行时按容器的规则配置创建
+ * <p>
+ * 规则新版本安装或卸载时移除并注销指标，新版本首次执行时按最新配置重建；
+ * 旧版本的在途请求仍在原来的并发隔离中释放
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/5
+ */
+@Component
+@RequiredArgsConstructor
+public class RuleBulkheadRegistry {
+
+    private final RuleMetrics metrics;
+
+    private final Map<Long, Entry> bulkheads = new ConcurrentHashMap<>();
+
+
+    /**
+     * 获取规则的并发隔离
+     *
+     * @param container 规则容器
+     * @return          bulkhead，未限制并发或容器已下线时返回null
+     */
+    public RuleBulkhead get(RuleContainer container) {
+        Entry entry = bulkheads.get(container.getId());
+        if (entry != null && entry.version >= container.getVersion()) {
+            return entry.bulkhead;
+        }
+
+        //已下线的旧版本不再创建，避免已卸载的规则重新留下并发隔离
+        RuleOptions options = container.getOptions();
+        if (container.isRetired() || options.getMaxConcurrentCalls() == null || options.getMaxConcurrentCalls() <= 0) {
+            return null;
+        }
+
+        return bulkheads.compute(container.getId(), (id, current) -> {
+            if (current != null && current.version >= container.getVersion()) {
+                return current;
+            }
+            if (current != null) {
+                metrics.remove(current.meters);
+            }
+
+            RuleBulkhead bulkhead = new RuleBulkhead(options.getMaxConcurrentCalls(),
+                    options.getMaxQueue() == null ? 0 : options.getMaxQueue(),
+                    options.getMaxWait() == null ? 0 : options.getMaxWait().toNanos());
+            return new Entry(container.getVersion(), bulkhead, metrics.monitor(container, bulkhead));
+        }).bulkhead;
+    }
+
+
+    /**
+     * 移除规则的并发隔离并注销指标
+     *
+     * @param id    规则id
+     */
+    public void invalidate(Long id) {
+        Entry entry = bulkheads.remove(id);
+        if (entry != null) {
+            metrics.remove(entry.meters);
+        }
+    }
+
+
+    @RequiredArgsConstructor
+    private static class Entry {
+
+        private final long version;
+
+        private final RuleBulkhead bulkhead;
+
+        private final List<Meter> meters;
+    }
+}
@@ -0,0 +1,150 @@
+package com.fly.dynamic.service;
+
+import com.fly.dynamic.entity.Rule;
+import lombok.extern.slf4j.Slf4j;
+import org.drools.modelcompiler.ExecutableModelProject;
+import org.kie.api.KieServices;
+import org.kie.api.builder.*;
+import org.kie.api.runtime.KieContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.fly.dynamic.common.RuleErrorMessage.RULE_SYNTAX_ERROR;
+import static com.fly.dynamic.common.RuleErrorMessage.RULE_TEXT_NULL_ERROR;
+
+/**
+ * 规则编译
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/6
+ */
+@Slf4j
+@Component
+public class RuleCompiler {
+
+    private static final String GROUP_ID = "com.fly.dynamic";
+
+    private static final String VERSION = "1.0.0";
+
+    private static final AtomicLong BUILDS = new AtomicLong();
+
+
+    /**
+     * 校验并编译规则，有任何错误或警告时拒绝，校验通过的结果可直接用于安装
+     *
+     * @param ruleText  规则文本
+     * @return          kieContainer
+     */
+    public KieContainer verify(String ruleText) {
+        Assert.hasText(ruleText, RULE_TEXT_NULL_ERROR);
+
+        ReleaseId releaseId = nextReleaseId();
+        try {
+            Results results = build(releaseId, ruleText, null).getResults();
+            List<Message> messages = results.getMessages();
+            if (!messages.isEmpty()) {
+                log.error("verify result: {}", results);
+                throw new IllegalArgumentException(RULE_SYNTAX_ERROR + "\n" + describe(results));
+            }
+
+            return KieServices.Factory.get().newKieContainer(releaseId);
+        } finally {
+            removeKieModule(releaseId);
+        }
+    }
+
+
+    /**
+     * DRL编译
+     *
+     * @param ruleText  规则文本
+     * @return          kieContainer
+     */
+    public KieContainer compileDrl(String ruleText) {
+        ReleaseId releaseId = nextReleaseId();
+        try {
+            Results results = build(releaseId, ruleText, null).getResults();
+            if (results.hasMessages(Message.Level.ERROR)) {
+                throw new IllegalArgumentException(RULE_SYNTAX_ERROR + "\n" + describe(results));
+            }
+
+            return KieServices.Factory.get().newKieContainer(releaseId);
+        } finally {
+            removeKieModule(releaseId);
+        }
+    }
+
+
+    /**
+     * 可执行模型编译
+     *
+     * @param rule      规则
+     * @param version   版本号
+     * @return          kieContainer，规则使用了可执行模型不支持的特性时返回null
+     */
+    public KieContainer compileExecutableModel(Rule rule, long version) {
+        ReleaseId releaseId = nextReleaseId();
+        try {
+            Results results = build(releaseId, rule.getRuleText(), ExecutableModelProject.class).getResults();
+            if (results.hasMessages(Message.Level.ERROR)) {
+                log.warn("- executable model not supported: {}, version: {}, fallback to drl: {}",
+                        rule.getId(), version, results.getMessages());
+                return null;
+            }
+
+            return KieServices.Factory.get().newKieContainer(releaseId);
+        } finally {
+            removeKieModule(releaseId);
+        }
+    }
+
+
+    /**
+     * 每次编译使用独立的releaseId，不带pom编译时所有KieModule共用默认releaseId，
+     * 并发编译时newKieContainer会取到其他规则的编译结果
+     *
+     * @return releaseId
+     */
+    private static ReleaseId nextReleaseId() {
+        return KieServices.Factory.get().newReleaseId(GROUP_ID, "rule-build-" + BUILDS.incrementAndGet(), VERSION);
+    }
+
+
+    /**
+     * 编译规则，编译成功时KieModule加入全局KieRepository
+     *
+     * @param releaseId     releaseId
+     * @param ruleText      规则文本
+     * @param projectType   工程类型，为空时使用DRL编译
+     * @return              kieBuilder
+     */
+    private static KieBuilder build(ReleaseId releaseId, String ruleText, Class<? extends KieBuilder.ProjectType> projectType) {
+        KieServices kieServices = KieServices.Factory.get();
+        KieFileSystem kieFileSystem = kieServices.newKieFileSystem();
+        kieFileSystem.generateAndWritePomXML(releaseId);
+        kieFileSystem.write("src/main/resources/rule.drl", ruleText);
+
+        KieBuilder kieBuilder = kieServices.newKieBuilder(kieFileSystem);
+        return projectType == null ? kieBuilder.buildAll() : kieBuilder.buildAll(projectType);
+    }
+
+
+    /**
+     * KieContainer创建后不再需要KieRepository中的KieModule，及时删除避免累积
+     *
+     * @param releaseId releaseId
+     */
+    private static void removeKieModule(ReleaseId releaseId) {
+        KieServices.Factory.get().getRepository().removeKieModule(releaseId);
+    }
+
+
+    private static String describe(Results results) {
+        return results.getMessages().stream().map(Message::getText).collect(Collectors.joining("\n"));
+    }
+}
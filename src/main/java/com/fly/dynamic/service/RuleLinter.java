@@ -0,0 +1,373 @@
+package com.fly.dynamic.service;
+
+import com.fly.dynamic.config.DynamicRuleProperties;
+import com.fly.dynamic.dto.RuleLintDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.drools.compiler.compiler.DrlParser;
+import org.drools.compiler.lang.descr.*;
+import org.kie.internal.builder.conf.LanguageLevelOption;
+import org.springframework.stereotype.Component;
+
+import java.beans.Introspector;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.fly.dynamic.common.RuleErrorMessage.RULE_LINT_ERROR;
+
+/**
+ * 规则性能检查，保存时静态分析DRL的条件和结果，
+ * 找出笛卡尔积连接、eval、from方法调用和缺少no-loop的自修改规则
+ * <p>
+ * 严格模式下总分、笛卡尔积连接数或节点数超过上限的规则拒绝保存
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/6
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RuleLinter {
+
+    /**
+     * 约束中的变量绑定，如：$age : age，排除:=
+     */
+    private static final Pattern BINDING = Pattern.compile("(\\$?[A-Za-z_][\\w$]*)\\s*:(?!=)");
+
+    /**
+     * 结果中的modify块，如：modify($result) { setData(map) }
+     */
+    private static final Pattern MODIFY = Pattern.compile("\\bmodify\\s*\\(\\s*([\\w$]+)\\s*\\)\\s*\\{([^}]*)}");
+
+    /**
+     * 结果中的update调用，无法确定修改了哪些字段
+     */
+    private static final Pattern UPDATE = Pattern.compile("\\bupdate\\s*\\(\\s*([\\w$]+)\\s*\\)");
+
+    /**
+     * modify块中修改的字段，setter或直接赋值
+     */
+    private static final Pattern MODIFIED_FIELD = Pattern.compile("\\bset([A-Z]\\w*)\\s*\\(|\\b([a-z]\\w*)\\s*=(?!=)");
+
+    /**
+     * 每次执行只插入一个实例的类型：参数map、结果、基础设施事实，
+     * 以及DRL中声明的由参数填充的类型；与这些类型连接不会放大匹配数
+     */
+    private static final Set<String> SINGLETON_TYPES = new HashSet<>(Arrays.asList(
+            "RuleResult", "Map", "Logger", "ApplicationContext", "JdbcTemplate"));
+
+    private static final List<String> LOOP_GUARDS = Arrays.asList("no-loop", "lock-on-active");
+
+    private final DynamicRuleProperties properties;
+
+
+    /**
+     * 检查规则，严格模式下超过上限时拒绝
+     *
+     * @param ruleText  规则文本
+     * @return          检查结果，未开启检查时返回null
+     */
+    public RuleLintDto check(String ruleText) {
+        DynamicRuleProperties.Lint config = properties.getLint();
+        if (!config.isEnabled()) {
+            return null;
+        }
+
+        RuleLintDto report = lint(ruleText);
+        if (!report.getWarnings().isEmpty()) {
+            log.warn("- rule lint score: {}, warnings: {}", report.getScore(), report.getWarnings());
+        }
+
+        if (config.isStrict() && (report.getScore() > config.getMaxScore()
+                || report.getCrossProducts() > config.getMaxCrossProducts()
+                || report.getNodes() > config.getMaxNodes())) {
+            throw new IllegalArgumentException(RULE_LINT_ERROR + "\n" +
+                    "score: " + report.getScore() + "/" + config.getMaxScore() +
+                    ", crossProducts: " + report.getCrossProducts() + "/" + config.getMaxCrossProducts() +
+                    ", nodes: " + report.getNodes() + "/" + config.getMaxNodes() + "\n" +
+                    describe(report));
+        }
+
+        return report;
+    }
+
+
+    /**
+     * 检查规则
+     *
+     * @param ruleText  规则文本
+     * @return          检查结果，规则语法错误时没有警告，错误由编译校验报告
+     */
+    public RuleLintDto lint(String ruleText) {
+        RuleLintDto report = new RuleLintDto();
+
+        DrlParser parser = new DrlParser(LanguageLevelOption.DRL6);
+        PackageDescr descr;
+        try {
+            descr = parser.parse(null, ruleText);
+        } catch (Exception e) {
+            log.debug("- rule lint parse error", e);
+            return report;
+        }
+        if (descr == null || parser.hasErrors()) {
+            return report;
+        }
+
+        Set<String> singletons = new HashSet<>(SINGLETON_TYPES);
+        for (TypeDeclarationDescr type : descr.getTypeDeclarations()) {
+            singletons.add(type.getTypeName());
+        }
+
+        for (RuleDescr rule : descr.getRules()) {
+            if (rule.isQuery()) {
+                continue;
+            }
+
+            Scope scope = new Scope(rule.getName(), report, singletons);
+            walk(scope, rule.getLhs(), true);
+            report.setCrossProducts(Math.max(report.getCrossProducts(), scope.crossProducts));
+
+            checkLoop(scope, rule);
+        }
+
+        report.getWarnings().sort(Comparator.comparingInt(RuleLintDto.Warning::getSeverity).reversed());
+        return report;
+    }
+
+
+    /**
+     * 警告的文本说明，每行一条
+     *
+     * @param report    检查结果
+     * @return          说明
+     */
+    public static String describe(RuleLintDto report) {
+        return report.getWarnings().stream()
+                .map(w -> "[" + w.getSeverity() + "] " + w.getRule() + ": " + w.getMessage())
+                .collect(Collectors.joining("\n"));
+    }
+
+
+    /**
+     * 遍历条件
+     *
+     * @param scope     当前规则
+     * @param descr     条件
+     * @param positive  是否为正向连接，not、exists、forall和accumulate中的pattern不产生笛卡尔积
+     */
+    private void walk(Scope scope, BaseDescr descr, boolean positive) {
+        if (descr instanceof PatternDescr) {
+            pattern(scope, (PatternDescr) descr, positive);
+        } else if (descr instanceof EvalDescr) {
+            scope.report.setNodes(scope.report.getNodes() + 1);
+            scope.warn(Check.EVAL, "eval(" + ((EvalDescr) descr).getContent() + ")");
+        } else if (descr instanceof ConditionalElementDescr) {
+            boolean join = positive && (descr instanceof AndDescr || descr instanceof OrDescr);
+            for (BaseDescr child : ((ConditionalElementDescr) descr).getDescrs()) {
+                walk(scope, child, join);
+            }
+        }
+    }
+
+
+    private void pattern(Scope scope, PatternDescr pattern, boolean positive) {
+        scope.report.setNodes(scope.report.getNodes() + 1);
+
+        List<String> expressions = new ArrayList<>();
+        for (BaseDescr constraint : pattern.getDescrs()) {
+            if (constraint instanceof ExprConstraintDescr) {
+                expressions.add(((ExprConstraintDescr) constraint).getExpression());
+            }
+        }
+
+        if (pattern.getIdentifier() != null) {
+            scope.constraints.put(pattern.getIdentifier(), new ArrayList<>(expressions));
+        }
+
+        PatternSourceDescr source = pattern.getSource();
+        boolean singleton = source == null && scope.isSingleton(pattern.getObjectType());
+        if (source instanceof FromDescr) {
+            String expression = ((FromDescr) source).getDataSource().getText();
+            expressions.add(expression);
+            scope.warn(expression.contains("(") ? Check.FROM_CALL : Check.FROM, "from " + expression);
+        } else if (source instanceof AccumulateDescr) {
+            walk(scope, ((AccumulateDescr) source).getInput(), false);
+        } else if (source instanceof CollectDescr) {
+            walk(scope, ((CollectDescr) source).getInputPattern(), false);
+        }
+
+        //两个可能有多个实例的pattern之间没有任何关联，每个组合都会产生一次匹配
+        if (positive && !singleton) {
+            if (scope.patterns > 0 && expressions.stream().noneMatch(scope::references)) {
+                scope.crossProducts++;
+                scope.warn(Check.CROSS_PRODUCT, pattern.getObjectType() + " " + expressions);
+            }
+            scope.patterns++;
+        }
+
+        if (pattern.getIdentifier() != null) {
+            scope.bindings.add(pattern.getIdentifier());
+        }
+        for (String expression : expressions) {
+            Matcher matcher = BINDING.matcher(expression);
+            while (matcher.find()) {
+                scope.bindings.add(matcher.group(1));
+            }
+        }
+    }
+
+
+    /**
+     * 结果修改了自身匹配的事实，且修改后该pattern仍然匹配时会再次激活；
+     * 修改的字段出现在pattern约束中时认为约束会阻止再次匹配
+     *
+     * @param scope 当前规则
+     * @param rule  规则
+     */
+    private void checkLoop(Scope scope, RuleDescr rule) {
+        Object consequence = rule.getConsequence();
+        if (consequence == null) {
+            return;
+        }
+
+        for (String guard : LOOP_GUARDS) {
+            AttributeDescr attribute = rule.getAttributes().get(guard);
+            if (attribute != null && !"false".equals(attribute.getValue())) {
+                return;
+            }
+        }
+
+        String text = consequence.toString();
+        Matcher modify = MODIFY.matcher(text);
+        while (modify.find()) {
+            if (rematches(scope, modify.group(1), modifiedFields(modify.group(2)))) {
+                scope.warn(Check.NO_LOOP, "modify(" + modify.group(1) + ")");
+                return;
+            }
+        }
+
+        Matcher update = UPDATE.matcher(text);
+        while (update.find()) {
+            if (rematches(scope, update.group(1), null)) {
+                scope.warn(Check.NO_LOOP, "update(" + update.group(1) + ")");
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * 修改后pattern是否仍然匹配
+     *
+     * @param scope     当前规则
+     * @param binding   被修改的变量
+     * @param fields    修改的字段，为空表示未知
+     * @return          没有约束，或约束与修改的字段无关时返回true
+     */
+    private static boolean rematches(Scope scope, String binding, Set<String> fields) {
+        List<String> expressions = scope.constraints.get(binding);
+        if (expressions == null) {
+            return false;
+        }
+        if (expressions.isEmpty()) {
+            return true;
+        }
+
+        return fields != null && expressions.stream().noneMatch(expression -> fields.stream()
+                .anyMatch(field -> containsWord(expression, field)));
+    }
+
+
+    private static Set<String> modifiedFields(String block) {
+        Set<String> fields = new HashSet<>();
+        Matcher matcher = MODIFIED_FIELD.matcher(block);
+        while (matcher.find()) {
+            fields.add(matcher.group(1) != null ? Introspector.decapitalize(matcher.group(1)) : matcher.group(2));
+        }
+        return fields;
+    }
+
+
+    private static boolean containsWord(String text, String word) {
+        return Pattern.compile("(?<![\\w$])" + Pattern.quote(word) + "(?![\\w$])").matcher(text).find();
+    }
+
+
+    /**
+     * 检查项及严重程度
+     */
+    private enum Check {
+
+        CROSS_PRODUCT(5, "条件与之前的pattern没有关联，产生笛卡尔积"),
+
+        FROM_CALL(4, "from中调用方法，每次匹配都会重新执行"),
+
+        NO_LOOP(4, "结果修改了事实但没有设置no-loop或lock-on-active，可能循环触发"),
+
+        EVAL(3, "eval无法被索引，每次匹配都会重新求值"),
+
+        FROM(1, "from的结果无法被索引");
+
+        private final int severity;
+
+        private final String message;
+
+        Check(int severity, String message) {
+            this.severity = severity;
+            this.message = message;
+        }
+    }
+
+
+    /**
+     * 单条规则的检查状态
+     */
+    private static class Scope {
+
+        private final String rule;
+
+        private final RuleLintDto report;
+
+        private final Set<String> singletons;
+
+        private final Set<String> bindings = new HashSet<>();
+
+        /**
+         * pattern绑定变量及其约束
+         */
+        private final Map<String, List<String>> constraints = new HashMap<>();
+
+        private int patterns;
+
+        private int crossProducts;
+
+        Scope(String rule, RuleLintDto report, Set<String> singletons) {
+            this.rule = rule;
+            this.report = report;
+            this.singletons = singletons;
+        }
+
+
+        boolean isSingleton(String objectType) {
+            return objectType != null && singletons.contains(objectType.substring(objectType.lastIndexOf('.') + 1));
+        }
+
+
+        boolean references(String expression) {
+            return bindings.stream().anyMatch(binding -> containsWord(expression, binding));
+        }
+
+
+        void warn(Check check, String detail) {
+            report.setScore(report.getScore() + check.severity);
+            report.getWarnings().add(new RuleLintDto.Warning()
+                    .setRule(rule)
+                    .setType(check.name())
+                    .setSeverity(check.severity)
+                    .setMessage(check.message + "：" + detail));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.fly.dynamic.service;
+
+import com.fly.dynamic.config.DynamicRuleProperties;
+import com.fly.dynamic.entity.Rule;
+import com.fly.dynamic.runtime.RuleGroup;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.drools.compiler.builder.impl.KnowledgeBuilderImpl;
+import org.drools.compiler.compiler.DrlParser;
+import org.drools.compiler.compiler.DroolsError;
+import org.drools.compiler.lang.descr.AttributeDescr;
+import org.drools.compiler.lang.descr.PackageDescr;
+import org.drools.compiler.lang.descr.RuleDescr;
+import org.kie.api.definition.KiePackage;
+import org.kie.internal.builder.KnowledgeBuilderError;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.builder.conf.LanguageLevelOption;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 打包模式的规则编译，按规则id把规则分配到固定数量的共享KieBase中，
+ * 减少大量小规则时每个KieBase的固定内存开销
+ * <p>
+ * 规则的包名改写为rule_{id}_{version}，并给每条规则设置同名agenda group；
+ * 已使用agenda-group、ruleflow-group或auto-focus的规则无法隔离，不参与打包
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/6
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RulePacker {
+
+    private static final String AGENDA_GROUP = "agenda-group";
+
+    private static final Set<String> GROUP_ATTRIBUTES = new HashSet<>(
+            Arrays.asList(AGENDA_GROUP, "ruleflow-group", "auto-focus"));
+
+    private final DynamicRuleProperties properties;
+
+    private final Map<Integer, RuleGroup> groups = new ConcurrentHashMap<>();
+
+
+    public boolean isEnabled() {
+        return properties.getPacking().isEnabled();
+    }
+
+
+    /**
+     * 把规则编译为独立的包并加入所属的共享KieBase
+     *
+     * 打包过程中的任何错误都不抛出，返回null由调用方独立编译，语法错误由独立编译报告
+     *
+     * @param rule      规则
+     * @param version   版本号
+     * @return          打包结果，规则无法隔离或打包出错时返回null
+     */
+    public Packed pack(Rule rule, long version) {
+        try {
+            return doPack(rule, version);
+        } catch (Exception e) {
+            log.warn("- pack rule {} error, compile standalone", rule.getId(), e);
+            return null;
+        }
+    }
+
+
+    private Packed doPack(Rule rule, long version) throws Exception {
+        DrlParser parser = new DrlParser(LanguageLevelOption.DRL6);
+        PackageDescr descr = parser.parse(null, rule.getRuleText());
+        if (parser.hasErrors()) {
+            log.warn("- parse rule {} error, compile standalone: {}", rule.getId(), parser.getErrors().stream()
+                    .map(DroolsError::getMessage)
+                    .collect(Collectors.joining("\n")));
+            return null;
+        }
+
+        for (RuleDescr ruleDescr : descr.getRules()) {
+            if (!Collections.disjoint(ruleDescr.getAttributes().keySet(), GROUP_ATTRIBUTES)) {
+                log.info("- rule {} uses agenda groups, compile standalone", rule.getId());
+                return null;
+            }
+        }
+
+        //改写包名并设置agenda group，规则之间互相隔离
+        String packageName = "rule_" + rule.getId() + "_" + version;
+        descr.setName(packageName);
+        for (RuleDescr ruleDescr : descr.getRules()) {
+            if (!ruleDescr.isQuery()) {
+                ruleDescr.addAttribute(new AttributeDescr(AGENDA_GROUP, packageName));
+            }
+        }
+
+        KnowledgeBuilderImpl builder = (KnowledgeBuilderImpl) KnowledgeBuilderFactory.newKnowledgeBuilder();
+        builder.addPackage(descr);
+        if (builder.hasErrors()) {
+            //改写包名后可能出现独立编译时没有的错误
+            log.warn("- build packed rule {} error, compile standalone: {}", rule.getId(), builder.getErrors().stream()
+                    .map(KnowledgeBuilderError::getMessage)
+                    .collect(Collectors.joining("\n")));
+            return null;
+        }
+
+        Collection<KiePackage> packages = builder.getKnowledgePackages();
+        RuleGroup group = groupOf(rule.getId());
+        try {
+            group.add(packages);
+        } catch (RuntimeException e) {
+            //如global与同组其他规则类型冲突
+            log.warn("- pack rule {} into {} error, compile standalone", rule.getId(), group, e);
+            group.remove(packageName);
+            return null;
+        }
+
+        log.debug("- pack rule {} into {}, packages: {}", rule.getId(), group, group.size());
+        return new Packed(group, packageName, group.getKieBase().getKiePackage(packageName));
+    }
+
+
+    private RuleGroup groupOf(Long id) {
+        int index = (int) Math.floorMod(id, (long) properties.getPacking().getGroupCount());
+        return groups.computeIfAbsent(index, RuleGroup::new);
+    }
+
+
+    /**
+     * 打包结果
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Packed {
+
+        /**
+         * 所属的共享KieBase
+         */
+        private final RuleGroup group;
+
+        /**
+         * 包名，同时也是agenda group名称
+         */
+        private final String packageName;
+
+        /**
+         * 规则所在的包
+         */
+        private final KiePackage kiePackage;
+    }
+}
@@ -0,0 +1,279 @@
+package com.fly.dynamic.service;
+
+import com.fly.dynamic.config.DynamicRuleProperties;
+import com.fly.dynamic.dto.RuleProfileDto;
+import com.fly.dynamic.runtime.RuleContainer;
+import lombok.extern.slf4j.Slf4j;
+import org.kie.api.event.KieRuntimeEventManager;
+import org.kie.api.event.rule.*;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.Match;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static com.fly.dynamic.common.RuleErrorMessage.PROFILE_RATE_ERROR;
+
+/**
+ * 规则执行剖析，按采样率给session挂载事件监听，
+ * 按规则和DRL规则名统计激活数、触发数、consequence耗时和工作内存大小
+ * <p>
+ * 未开启时只有一次volatile读，不创建任何对象
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/5
+ */
+@Slf4j
+@Component
+public class RuleProfiler {
+
+    private volatile boolean enabled;
+
+    private volatile double sampleRate;
+
+    /**
+     * 是否挂载过监听，挂载过才需要在归还池化session前摘除
+     */
+    private volatile boolean attached;
+
+    private final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+
+    public RuleProfiler(DynamicRuleProperties properties) {
+        update(properties.getProfile().isEnabled(), properties.getProfile().getSampleRate());
+    }
+
+
+    /**
+     * 修改剖析配置
+     *
+     * @param enabled       是否开启
+     * @param sampleRate    采样率，0~1
+     */
+    public void update(boolean enabled, double sampleRate) {
+        Assert.isTrue(sampleRate >= 0 && sampleRate <= 1, PROFILE_RATE_ERROR);
+
+        this.sampleRate = sampleRate;
+        this.enabled = enabled;
+        log.info("- rule profile enabled: {}, sample rate: {}", enabled, sampleRate);
+    }
+
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+
+    /**
+     * 按采样率给session挂载监听，需在插入事实前调用
+     *
+     * @param container 规则容器
+     * @param session   有状态或无状态session
+     */
+    public void attach(RuleContainer container, KieRuntimeEventManager session) {
+        if (!enabled || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+
+        Profile profile = profiles.computeIfAbsent(String.valueOf(container.getName()), name -> new Profile());
+        profile.samples.increment();
+
+        Probe probe = new Probe(profile);
+        session.addEventListener((AgendaEventListener) probe);
+        session.addEventListener((RuleRuntimeEventListener) probe);
+        attached = true;
+    }
+
+
+    /**
+     * 摘除session上的监听，池化session归还前必须调用，避免监听跟随session被复用
+     *
+     * @param session   session
+     */
+    public void detach(KieSession session) {
+        if (!attached) {
+            return;
+        }
+
+        for (AgendaEventListener listener : new ArrayList<>(session.getAgendaEventListeners())) {
+            if (listener instanceof Probe) {
+                session.removeEventListener(listener);
+                session.removeEventListener((RuleRuntimeEventListener) listener);
+            }
+        }
+    }
+
+
+    /**
+     * 全部规则的剖析结果，按consequence总耗时倒序
+     *
+     * @return  结果
+     */
+    public List<RuleProfileDto> snapshot() {
+        return profiles.entrySet().stream()
+                .map(e -> e.getValue().toDto(e.getKey()))
+                .sorted(Comparator.comparingLong(RuleProfiler::totalMicros).reversed())
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * 单个规则的剖析结果
+     *
+     * @param name  规则名称
+     * @return      结果，未采样时返回null
+     */
+    public RuleProfileDto snapshot(String name) {
+        Profile profile = profiles.get(name);
+        return profile == null ? null : profile.toDto(name);
+    }
+
+
+    /**
+     * 清空剖析结果
+     */
+    public void reset() {
+        profiles.clear();
+    }
+
+
+    private static long totalMicros(RuleProfileDto dto) {
+        return dto.getRules().stream().mapToLong(RuleProfileDto.DrlRule::getTotalMicros).sum();
+    }
+
+
+    /**
+     * 单个规则的统计
+     */
+    private static class Profile {
+
+        private final LongAdder samples = new LongAdder();
+
+        private final LongAccumulator maxWorkingMemory = new LongAccumulator(Math::max, 0);
+
+        private final Map<String, DrlRuleStats> rules = new ConcurrentHashMap<>();
+
+        DrlRuleStats get(Match match) {
+            return rules.computeIfAbsent(match.getRule().getName(), name -> new DrlRuleStats());
+        }
+
+        RuleProfileDto toDto(String name) {
+            List<RuleProfileDto.DrlRule> list = rules.entrySet().stream()
+                    .map(e -> e.getValue().toDto(e.getKey()))
+                    .sorted(Comparator.comparingLong(RuleProfileDto.DrlRule::getTotalMicros).reversed())
+                    .collect(Collectors.toList());
+
+            return new RuleProfileDto()
+                    .setName(name)
+                    .setSamples(samples.sum())
+                    .setMaxWorkingMemory(maxWorkingMemory.get())
+                    .setRules(list);
+        }
+    }
+
+
+    /**
+     * DRL中单条规则的统计
+     */
+    private static class DrlRuleStats {
+
+        private final LongAdder activations = new LongAdder();
+
+        private final LongAdder cancellations = new LongAdder();
+
+        private final LongAdder fired = new LongAdder();
+
+        private final LongAdder nanos = new LongAdder();
+
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private final LongAdder workingMemory = new LongAdder();
+
+        RuleProfileDto.DrlRule toDto(String name) {
+            long count = fired.sum();
+            long total = nanos.sum();
+
+            return new RuleProfileDto.DrlRule()
+                    .setName(name)
+                    .setActivations(activations.sum())
+                    .setCancellations(cancellations.sum())
+                    .setFired(count)
+                    .setTotalMicros(TimeUnit.NANOSECONDS.toMicros(total))
+                    .setAvgMicros(count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(total / count))
+                    .setMaxMicros(TimeUnit.NANOSECONDS.toMicros(maxNanos.get()))
+                    .setAvgWorkingMemory(count == 0 ? 0 : workingMemory.sum() / count);
+        }
+    }
+
+
+    /**
+     * 挂载到单个session上的监听，session单线程执行，字段无需同步
+     */
+    private static class Probe extends DefaultAgendaEventListener implements RuleRuntimeEventListener {
+
+        private final Profile profile;
+
+        private long facts;
+
+        private long start;
+
+        Probe(Profile profile) {
+            this.profile = profile;
+        }
+
+        @Override
+        public void matchCreated(MatchCreatedEvent event) {
+            profile.get(event.getMatch()).activations.increment();
+        }
+
+        @Override
+        public void matchCancelled(MatchCancelledEvent event) {
+            profile.get(event.getMatch()).cancellations.increment();
+        }
+
+        @Override
+        public void beforeMatchFired(BeforeMatchFiredEvent event) {
+            start = System.nanoTime();
+        }
+
+        @Override
+        public void afterMatchFired(AfterMatchFiredEvent event) {
+            long elapsed = System.nanoTime() - start;
+
+            DrlRuleStats stats = profile.get(event.getMatch());
+            stats.fired.increment();
+            stats.nanos.add(elapsed);
+            stats.maxNanos.accumulate(elapsed);
+            stats.workingMemory.add(facts);
+        }
+
+        @Override
+        public void objectInserted(ObjectInsertedEvent event) {
+            profile.maxWorkingMemory.accumulate(++facts);
+        }
+
+        @Override
+        public void objectUpdated(ObjectUpdatedEvent event) {
+        }
+
+        @Override
+        public void objectDeleted(ObjectDeletedEvent event) {
+            facts--;
+        }
+    }
+}
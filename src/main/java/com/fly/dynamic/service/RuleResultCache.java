@@ -0,0 +1,168 @@
+package com.fly.dynamic.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fly.dynamic.common.RuleMetrics;
+import com.fly.dynamic.config.DynamicRuleProperties;
+import com.fly.dynamic.entity.RuleResult;
+import com.fly.dynamic.runtime.RuleContainer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 规则结果缓存，只用于配置了resultCache的确定性规则，
+ * 相同规则版本和相同参数直接返回上次的结果，不再创建session和执行
+ * <p>
+ * 键中包含规则版本，规则修改后旧结果不会再命中；规则修改或删除后同时主动清理
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/5
+ */
+@Slf4j
+@Component
+public class RuleResultCache {
+
+    private final Cache<Key, RuleResult> cache;
+
+    /**
+     * map按key排序输出，相同内容的参数得到相同的键
+     */
+    private final ObjectWriter keyWriter;
+
+    private final ObjectMapper objectMapper;
+
+    public RuleResultCache(DynamicRuleProperties properties, ObjectMapper objectMapper, RuleMetrics metrics) {
+        DynamicRuleProperties.ResultCache config = properties.getResultCache();
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getTtl())
+                .recordStats()
+                .build();
+        this.keyWriter = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        this.objectMapper = objectMapper;
+
+        metrics.monitor(cache, "dynamic.rule.result");
+    }
+
+
+    /**
+     * 生成缓存键
+     *
+     * @param container 规则容器
+     * @param param     param
+     * @return          键，参数无法序列化时返回null
+     */
+    public Key keyOf(RuleContainer container, Map<String, Object> param) {
+        try {
+            return new Key(container.getId(), container.getVersion(), keyWriter.writeValueAsString(param));
+        } catch (JsonProcessingException e) {
+            log.debug("- rule result key error: {}", container, e);
+            return null;
+        }
+    }
+
+
+    /**
+     * 获取缓存的结果
+     *
+     * @param key   键
+     * @return      结果副本，未命中返回null
+     */
+    public RuleResult get(Key key) {
+        RuleResult result = cache.getIfPresent(key);
+        return result == null ? null : copyOf(result);
+    }
+
+
+    /**
+     * 缓存执行成功的结果，失败、超时和拒绝的结果不缓存
+     *
+     * @param key       键
+     * @param result    结果
+     */
+    public void put(Key key, RuleResult result) {
+        if (result != null && Integer.valueOf(0).equals(result.getCode())) {
+            RuleResult snapshot = snapshot(result);
+            if (snapshot != null) {
+                cache.put(key, snapshot);
+            }
+        }
+    }
+
+
+    /**
+     * 清理某规则的全部结果
+     *
+     * @param id    规则id
+     */
+    public void invalidate(Long id) {
+        cache.asMap().keySet().removeIf(key -> key.getId().equals(id));
+    }
+
+
+    /**
+     * 结果快照，data转为json树保存，之后调用方或规则修改原对象不影响快照
+     *
+     * @param result    结果
+     * @return          快照，data无法序列化时返回null
+     */
+    RuleResult snapshot(RuleResult result) {
+        try {
+            Object data = result.getData();
+            return new RuleResult()
+                    .setCode(result.getCode())
+                    .setMessage(result.getMessage())
+                    .setData(data == null ? null : objectMapper.valueToTree(data));
+        } catch (IllegalArgumentException e) {
+            log.debug("- rule result snapshot error: {}", e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * 由快照生成副本，每次还原出新的data，避免调用方修改缓存中的结果
+     *
+     * @param snapshot  快照
+     * @return          副本
+     */
+    RuleResult copyOf(RuleResult snapshot) {
+        Object data = snapshot.getData();
+        if (data instanceof JsonNode) {
+            try {
+                data = objectMapper.treeToValue((JsonNode) data, Object.class);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return new RuleResult()
+                .setCode(snapshot.getCode())
+                .setMessage(snapshot.getMessage())
+                .setData(data);
+    }
+
+
+    /**
+     * 缓存键：规则id、规则版本和按key排序后的参数json
+     */
+    @Value
+    public static class Key {
+
+        Long id;
+
+        long version;
+
+        String param;
+    }
+}
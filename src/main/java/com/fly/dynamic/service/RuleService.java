@@ -1,31 +1,52 @@
 package com.fly.dynamic.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fly.dynamic.common.RuleMetrics;
+import com.fly.dynamic.config.DynamicRuleProperties;
+import com.fly.dynamic.config.RuleOptions;
 import com.fly.dynamic.dao.RuleDao;
 import com.fly.dynamic.dto.Page;
 import com.fly.dynamic.dto.RuleBriefDto;
 import com.fly.dynamic.entity.Rule;
-import lombok.RequiredArgsConstructor;
+import com.fly.dynamic.runtime.CompileMode;
+import com.fly.dynamic.runtime.FactBinding;
+import com.fly.dynamic.runtime.RuleContainer;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import lombok.extern.slf4j.Slf4j;
+import org.kie.api.KieBase;
+import org.kie.api.definition.KiePackage;
+import org.kie.api.definition.rule.Global;
+import org.kie.api.definition.type.FactType;
 import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
-import org.kie.internal.utils.KieHelper;
+import org.kie.api.runtime.StatelessKieSession;
+import org.springframework.beans.BeanUtils;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.event.EventListener;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 import org.springframework.util.ObjectUtils;
+import org.springframework.util.unit.DataSize;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import static com.fly.dynamic.common.RuleErrorMessage.*;
-import static org.kie.api.io.ResourceType.DRL;
 
 /**
  * 规则引擎动态获取session工具类
@@ -36,15 +57,141 @@ import static org.kie.api.io.ResourceType.DRL;
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class RuleService {
 
-    private static final Map<Long, KieContainer> CACHE_ID = new HashMap<>();
-    private static final Map<String, Long> CACHE_NAME = new HashMap<>();
+    /**
+     * 规则容器缓存，每个规则对应一个加载中的future，保证同一规则只编译一次
+     */
+    private final AsyncCache<Long, RuleContainer> cacheId;
+
+    /**
+     * 规则名称到id的缓存，同一名称并发未命中时只查询一次数据库
+     */
+    private final AsyncCache<String, Long> cacheName;
+
+    /**
+     * 不存在的规则id，在过期前直接失败
+     */
+    private final Cache<Long, Boolean> missingId;
+
+    /**
+     * 不存在的规则名称，在过期前直接失败
+     */
+    private final Cache<String, Boolean> missingName;
+
+    /**
+     * 已卸载规则的卸载版本号，版本号更旧的后台编译结果不再安装，避免已删除的规则被重新加入缓存
+     */
+    private final Cache<Long, Long> uninstalled;
 
     private final ApplicationContext context;
     private final RuleDao ruleDao;
     private final JdbcTemplate jdbcTemplate;
+    private final DynamicRuleProperties properties;
+    private final ObjectMapper objectMapper;
+    private final RuleArtifactStore artifactStore;
+    private final RuleMetrics metrics;
+    private final RuleProfiler profiler;
+    private final RuleResultCache resultCache;
+    private final RulePacker packer;
+    private final RuleCompiler compiler;
+    private final RuleBulkheadRegistry bulkheads;
+
+    /**
+     * 规则容器版本号
+     */
+    private final AtomicLong versions = new AtomicLong();
+
+    /**
+     * 后台编译线程池，保存规则后在此预编译新版本
+     */
+    private final ThreadPoolExecutor compileExecutor;
+
+    public RuleService(ApplicationContext context,
+                       RuleDao ruleDao,
+                       JdbcTemplate jdbcTemplate,
+                       DynamicRuleProperties properties,
+                       ObjectMapper objectMapper,
+                       RuleArtifactStore artifactStore,
+                       RuleMetrics metrics,
+                       RuleProfiler profiler,
+                       RuleResultCache resultCache,
+                       RulePacker packer,
+                       RuleCompiler compiler,
+                       RuleBulkheadRegistry bulkheads) {
+        this.context = context;
+        this.ruleDao = ruleDao;
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.artifactStore = artifactStore;
+        this.metrics = metrics;
+        this.profiler = profiler;
+        this.resultCache = resultCache;
+        this.packer = packer;
+        this.compiler = compiler;
+        this.bulkheads = bulkheads;
+
+        DynamicRuleProperties.Cache cache = properties.getCache();
+
+        //被淘汰、替换或移除的容器在此处统一下线，等在途请求结束后释放
+        Caffeine<Long, RuleContainer> builder = Caffeine.newBuilder()
+                .recordStats()
+                .removalListener((Long id, RuleContainer container, RemovalCause cause) -> {
+                    log.debug("- remove rule container: {}, cause: {}", container, cause);
+                    if (container != null) {
+                        container.retire();
+                    }
+                });
+
+        //配置内存上限时按预估内存淘汰，冷门或占用大的规则优先淘汰，再次访问时重新编译
+        DataSize maximumMemory = cache.getMaximumMemory();
+        if (maximumMemory != null && maximumMemory.toBytes() > 0) {
+            builder.maximumWeight(Math.max(1, maximumMemory.toKilobytes()))
+                    .weigher((Long id, RuleContainer container) -> container.getWeight());
+        } else {
+            builder.maximumSize(cache.getMaximumSize());
+        }
+        this.cacheId = builder.buildAsync();
+
+        this.cacheName = Caffeine.newBuilder()
+                .maximumSize(cache.getMaximumNameSize())
+                .recordStats()
+                .buildAsync();
+
+        metrics.monitor(cacheId.synchronous(), "dynamic.rule.container");
+        metrics.monitor(cacheName.synchronous(), "dynamic.rule.name");
+        metrics.monitorFootprint(() -> getLoadedContainers().values().stream()
+                .mapToLong(RuleContainer::getFootprint)
+                .sum());
+
+        this.missingId = Caffeine.newBuilder()
+                .maximumSize(cache.getMaximumNameSize())
+                .expireAfterWrite(cache.getNegativeTtl())
+                .build();
+
+        this.missingName = Caffeine.newBuilder()
+                .maximumSize(cache.getMaximumNameSize())
+                .expireAfterWrite(cache.getNegativeTtl())
+                .build();
+
+        this.uninstalled = Caffeine.newBuilder()
+                .maximumSize(cache.getMaximumNameSize())
+                .build();
+
+        int poolSize = properties.getCompile().getPoolSize();
+        this.compileExecutor = new ThreadPoolExecutor(poolSize, poolSize,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("rule-compile-"));
+        this.compileExecutor.allowCoreThreadTimeOut(true);
+    }
+
+
+    @PreDestroy
+    public void destroy() {
+        compileExecutor.shutdownNow();
+    }
 
 
     /**
@@ -71,6 +218,76 @@ public class RuleService {
             log.error("不支持当前数据库，请手动建表：", e);
         }
 
+        //集群同步按更新时间轮询
+        if (properties.getSync().isEnabled()) {
+            try {
+                jdbcTemplate.execute("create index idx_tb_rule_update_time on tb_rule (update_time)");
+                log.info("创建索引完成：idx_tb_rule_update_time");
+            } catch (Exception e) {
+                log.debug("索引已存在或不支持当前数据库：{}", e.getMessage());
+            }
+        }
+
+        //在就绪事件中同步执行，完成或超时后应用才会进入就绪状态
+        preload();
+    }
+
+
+    /**
+     * 并行预编译最近更新的规则，数量不超过容器缓存上限
+     */
+    private void preload() {
+        DynamicRuleProperties.Preload preload = properties.getPreload();
+        if (!preload.isEnabled()) {
+            return;
+        }
+
+        List<Long> ids = ruleDao.findRecentIds(properties.getCache().getMaximumSize());
+        int total = ids.size();
+        log.info("开始预编译规则，共{}个", total);
+
+        long start = System.currentTimeMillis();
+        AtomicInteger done = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(preload.getPoolSize(),
+                new CustomizableThreadFactory("rule-preload-"));
+
+        try {
+            CompletableFuture<?>[] futures = ids.stream()
+                    .map(id -> CompletableFuture.runAsync(() -> preload(id, done, total), executor))
+                    .toArray(CompletableFuture[]::new);
+
+            CompletableFuture.allOf(futures).get(preload.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            log.info("预编译规则完成，共{}个，耗时{}ms", total, System.currentTimeMillis() - start);
+        } catch (TimeoutException e) {
+            log.warn("预编译规则超时，已完成{}/{}个，剩余规则继续在后台编译", done.get(), total);
+        } catch (ExecutionException e) {
+            log.error("预编译规则异常：", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            //不中断已提交的任务，超时后由后台继续编译
+            executor.shutdown();
+        }
+    }
+
+
+    /**
+     * 预编译单个规则
+     *
+     * @param id    id
+     * @param done  已完成数量
+     * @param total 总数
+     */
+    private void preload(Long id, AtomicInteger done, int total) {
+        long start = System.currentTimeMillis();
+
+        try {
+            RuleContainer container = getContainerById(id);
+            log.info("预编译规则{}完成（{}/{}），耗时{}ms",
+                    container, done.incrementAndGet(), total, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("预编译规则{}失败（{}/{}）：", id, done.incrementAndGet(), total, e);
+        }
     }
 
 
@@ -81,27 +298,47 @@ public class RuleService {
      */
     @Transactional(rollbackFor = Exception.class)
     public void save(Rule rule) {
-        Long id = rule.getId();
-        LocalDateTime now = LocalDateTime.now();
+        save(rule, null);
+    }
 
-        Boolean exist = ruleDao.exist(rule.getName(), id);
-        Assert.isTrue(!exist, NAME_EXIST_ERROR);
 
-        //如果是新增
-        if (ObjectUtils.isEmpty(id)) {
-            rule.setCreateTime(now);
-        }
+    /**
+     * 新增或保存，提交后直接安装已校验编译的结果
+     * 校验结果由本方法负责释放：保存失败、回滚或提交失败时释放，提交成功后安装或释放
+     *
+     * @param rule      规则
+     * @param verified  保存前校验时编译的结果，为空时提交后在后台编译
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void save(Rule rule, KieContainer verified) {
+        try {
+            Long id = rule.getId();
+            //数据库datetime只精确到秒，保持内存与数据库中的更新时间一致
+            LocalDateTime now = LocalDateTime.now().withNano(0);
+
+            Boolean exist = ruleDao.exist(rule.getName(), id);
+            Assert.isTrue(!exist, NAME_EXIST_ERROR);
 
-        rule.setUpdateTime(now);
-        String ruleText = rule.getRuleText();
+            //如果是新增
+            if (ObjectUtils.isEmpty(id)) {
+                rule.setCreateTime(now);
+            }
 
-        Assert.hasText(ruleText, RULE_TEXT_NULL_ERROR);
+            rule.setUpdateTime(now);
+            String ruleText = rule.getRuleText();
 
-        //保存数据库
-        ruleDao.save(rule);
+            Assert.hasText(ruleText, RULE_TEXT_NULL_ERROR);
 
-        //刷新缓存
-        uninstall(rule);
+            //保存数据库
+            ruleDao.save(rule);
+        } catch (RuntimeException e) {
+            dispose(verified);
+            throw e;
+        }
+
+        //提交后安装新版本，没有校验结果时在后台编译；旧版本处理完在途请求后释放
+        Rule saved = copyOf(rule);
+        afterCommit(() -> refresh(saved, verified), () -> dispose(verified));
     }
 
 
@@ -147,101 +384,677 @@ public class RuleService {
 
         ruleDao.deleteById(id);
 
-        //清缓存
-        uninstall(rule.get());
+        //提交后清缓存
+        afterCommit(() -> uninstall(id));
         return rule.get();
     }
 
     
     /**
-     * 根据id获取对应的session
+     * 创建session，并设置日志和spring容器
+     * 容器需先通过{@link #acquireById(Long)}占用，session使用完毕后再释放容器
      *
-     * @param id    id
-     * @return      session
+     * @param container 规则容器
+     * @return          session
      */
-    public KieSession getSessionById(Long id) {
-        KieContainer container = getContainerById(id);
+    public KieSession newSession(RuleContainer container) {
+        return prepare(container, container.newKieSession());
+    }
 
-        KieSession session = container.newKieSession();
 
-        //设置日志和spring容器
-        session.insert(log);
-        session.insert(context);
-        session.insert(jdbcTemplate);
+    /**
+     * 从规则容器的session池中借用session，并设置日志和spring容器
+     *
+     * @param container 规则容器
+     * @return          session，dispose后归还
+     */
+    public KieSession newPooledSession(RuleContainer container) {
+        return prepare(container, container.newPooledSession());
+    }
 
+
+    /**
+     * 创建无状态session并设置global，日志和spring容器事实需随其他事实一起执行
+     *
+     * @param container 规则容器
+     * @return          session
+     * @see #getInfrastructureFacts(RuleContainer)
+     */
+    public StatelessKieSession newStatelessSession(RuleContainer container) {
+        StatelessKieSession session = container.newStatelessKieSession();
+        container.getGlobals().forEach(session::setGlobal);
+        profiler.attach(container, session);
         return session;
     }
 
 
     /**
-     * 根据名称获取规则容器session
+     * 需要作为事实插入session的日志、spring容器和jdbcTemplate，
+     * 规则关闭infrastructureFacts后返回空列表
      *
-     * @param name 名称
-     * @return      session
+     * @param container 规则容器
+     * @return          事实列表
      */
-    public KieSession getSessionByName(String name) {
-        Long id = CACHE_NAME.get(name);
+    public List<Object> getInfrastructureFacts(RuleContainer container) {
+        if (!container.getOptions().getInfrastructureFacts()) {
+            return Collections.emptyList();
+        }
 
-        if (id != null) {
-            return getSessionById(id);
+        return Arrays.asList(log, context, jdbcTemplate);
+    }
+
+
+    /**
+     * 设置global，兼容模式下同时插入日志和spring容器，开启剖析时按采样率挂载监听
+     *
+     * @param container 规则容器
+     * @param session   session
+     * @return          session
+     */
+    private KieSession prepare(RuleContainer container, KieSession session) {
+        container.getGlobals().forEach(session::setGlobal);
+        profiler.attach(container, session);
+        if (container.getAgendaGroup() != null) {
+            session.getAgenda().getAgendaGroup(container.getAgendaGroup()).setFocus();
+        }
+        getInfrastructureFacts(container).forEach(session::insert);
+        return session;
+    }
+
+
+    /**
+     * 解析规则中声明的global，只绑定能找到取值的global
+     *
+     * @param packages  规则所在的包
+     * @return          global名称及取值
+     */
+    private Map<String, Object> resolveGlobals(Collection<KiePackage> packages) {
+        Map<String, Object> globals = new HashMap<>();
+
+        for (KiePackage kiePackage : packages) {
+            for (Global global : kiePackage.getGlobalVariables()) {
+                Object value = getGlobal(global.getName());
+                if (value != null) {
+                    globals.put(global.getName(), value);
+                }
+            }
+        }
+
+        return Collections.unmodifiableMap(globals);
+    }
+
+
+    /**
+     * 解析第一个包含规则的包中声明的事实类型，并为其构建反序列化器
+     *
+     * @param packages  规则所在的包
+     * @return          事实类型
+     */
+    private List<FactBinding> resolveFactBindings(Collection<KiePackage> packages) {
+        KiePackage kiePackage = packages.stream()
+                .filter(p -> !p.getRules().isEmpty())
+                .findFirst()
+                .orElse(null);
+
+        if (kiePackage == null) {
+            return Collections.emptyList();
         }
 
-        synchronized (CACHE_NAME) {
-            CACHE_NAME.computeIfAbsent(name, this::getIdByName);
-            id = CACHE_NAME.get(name);
-            return getSessionById(id);
+        List<FactBinding> bindings = new ArrayList<>();
+        for (FactType factType : kiePackage.getFactTypes()) {
+            Class<?> factClass = factType.getFactClass();
+            bindings.add(new FactBinding(factClass, objectMapper.readerFor(factClass)));
         }
+
+        return Collections.unmodifiableList(bindings);
     }
 
+
+    /**
+     * 根据名称获取global取值
+     *
+     * @param name  global名称
+     * @return      取值，不存在返回null
+     */
+    private Object getGlobal(String name) {
+        switch (name) {
+            case "log":
+                return log;
+            case "context":
+                return context;
+            case "jdbcTemplate":
+                return jdbcTemplate;
+            default:
+                String beanName = properties.getGlobals().get(name);
+                return beanName == null ? null : context.getBean(beanName);
+        }
+    }
+
+
+    /**
+     * 根据id占用规则容器，使用完毕后必须调用{@link RuleContainer#release()}
+     *
+     * @param id    id
+     * @return      规则容器
+     */
+    public RuleContainer acquireById(Long id) {
+        while (true) {
+            RuleContainer container = getContainerById(id);
+
+            //容器恰好被替换下线时，重新获取新版本
+            if (container.tryAcquire()) {
+                return container;
+            }
+        }
+    }
+
+
+    /**
+     * 根据名称占用规则容器，使用完毕后必须调用{@link RuleContainer#release()}
+     *
+     * @param name  名称
+     * @return      规则容器
+     */
+    public RuleContainer acquireByName(String name) {
+        return acquireById(getIdByName(name));
+    }
+
+
     /**
-     * 根据名称获取规则id
+     * 根据名称获取规则id，同一名称并发未命中时只查询一次数据库
      *
      * @param name  name
      * @return      id
      */
     private Long getIdByName(String name) {
+        return getOrLoad(cacheName, name, this::loadIdByName);
+    }
+
+
+    /**
+     * 从数据库查询规则id，不存在的名称缓存一段时间
+     *
+     * @param name  name
+     * @return      id
+     */
+    private Long loadIdByName(String name) {
+        Assert.isNull(missingName.getIfPresent(name), CANNOT_FIND_RULE_ERROR);
+
         Rule rule = ruleDao.findByName(name);
+        if (rule == null) {
+            missingName.put(name, Boolean.TRUE);
+        }
+
         Assert.notNull(rule, CANNOT_FIND_RULE_ERROR);
         return rule.getId();
     }
 
 
+    /**
+     * 已加载完成的规则容器
+     *
+     * @return id及规则容器
+     */
+    public Map<Long, RuleContainer> getLoadedContainers() {
+        Map<Long, RuleContainer> loaded = new HashMap<>();
+
+        cacheId.asMap().forEach((id, future) -> {
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                loaded.put(id, future.join());
+            }
+        });
+
+        return loaded;
+    }
+
+
+    /**
+     * 规则在其他节点被修改，名称或内容与缓存中的版本不同时在后台重新编译
+     * <p>
+     * 轮询结果不含规则文本，只有已加载且不比本地版本旧的规则才读取全文比较
+     *
+     * @param row 数据库中的规则，只有id、名称和更新时间
+     */
+    public void onRemoteChange(Rule row) {
+        Long id = row.getId();
+        RuleContainer current = getLoadedContainers().get(id);
+
+        //未加载的规则只需清理名称和不存在缓存，名称可能已被修改
+        if (current == null) {
+            evictName(id);
+            clearMissing(row);
+            return;
+        }
+
+        if (isOlder(row, current)) {
+            return;
+        }
+
+        Optional<Rule> rule = ruleDao.findById(id);
+        if (!rule.isPresent()) {
+            uninstall(id);
+        } else if (isChanged(rule.get(), current)) {
+            log.info("- rule changed on other node, reload: {}", current);
+            refresh(rule.get());
+        }
+    }
+
+
+    /**
+     * 规则在其他节点被删除
+     *
+     * @param id id
+     */
+    public void onRemoteDelete(Long id) {
+        log.info("- rule deleted on other node, evict: {}", id);
+        uninstall(id);
+    }
+
+
+    /**
+     * 数据库中的规则是否比缓存中的版本旧
+     *
+     * @param row       数据库中的规则
+     * @param current   缓存中的版本
+     * @return          是否更旧
+     */
+    private static boolean isOlder(Rule row, RuleContainer current) {
+        LocalDateTime time = row.getUpdateTime();
+        return time != null && current.getUpdateTime() != null && time.isBefore(current.getUpdateTime());
+    }
+
+
+    /**
+     * 数据库中的规则是否与缓存中的版本不同，比本地版本旧的不处理；
+     * 更新时间只精确到秒，同一秒内的多次修改通过内容摘要区分
+     *
+     * @param row       数据库中的规则
+     * @param current   缓存中的版本
+     * @return          是否需要重新编译
+     */
+    private static boolean isChanged(Rule row, RuleContainer current) {
+        if (isOlder(row, current)) {
+            return false;
+        }
+
+        return !Objects.equals(row.getName(), current.getName())
+                || !Objects.equals(RuleContainer.digestOf(row.getRuleText()), current.getDigest());
+    }
+
+
     /**
      * 卸载某规则
      *
-     * @param rule rule
+     * @param id id
      */
-    private void uninstall(Rule rule) {
+    private void uninstall(Long id) {
+        //先记录卸载版本，之前开始的后台编译完成后不再安装
+        uninstalled.put(id, versions.incrementAndGet());
+
+        //卸载container，由removalListener负责下线
+        cacheId.synchronous().invalidate(id);
+        artifactStore.delete(id);
+        resultCache.invalidate(id);
+        bulkheads.invalidate(id);
+
+        //清理name
+        evictName(id);
+    }
+
+
+    /**
+     * 清理指向该规则的名称缓存，规则可能已改名
+     *
+     * @param id id
+     */
+    private void evictName(Long id) {
+        cacheName.asMap().values().removeIf(future -> future.isDone()
+                && !future.isCompletedExceptionally()
+                && id.equals(future.join()));
+    }
+
+
+    /**
+     * 规则新增或修改后，清理不存在的缓存
+     *
+     * @param rule 规则
+     */
+    private void clearMissing(Rule rule) {
+        missingId.invalidate(rule.getId());
+        if (rule.getName() != null) {
+            missingName.invalidate(rule.getName());
+        }
+    }
+
+
+    /**
+     * 后台编译规则新版本，编译完成后替换缓存中的旧版本
+     *
+     * @param rule 规则
+     */
+    private void refresh(Rule rule) {
+        refresh(rule, null);
+    }
+
+
+    /**
+     * 安装规则新版本，有可用的校验编译结果时直接安装，否则在后台编译
+     *
+     * @param rule      规则
+     * @param verified  校验时编译的结果
+     */
+    private void refresh(Rule rule, KieContainer verified) {
         Long id = rule.getId();
+        long version = versions.incrementAndGet();
+        evictName(id);
+        clearMissing(rule);
 
-        //卸载container
-        KieContainer container = CACHE_ID.get(id);
-        if (container != null) {
-            CACHE_ID.remove(id);
-            container.dispose();
+        //校验结果只适用于DRL编译且未开启打包模式的规则，不使用时及时释放
+        RuleOptions options = properties.getOptions(rule.getName());
+        if (verified != null) {
+            if (options.getCompileMode() == CompileMode.DRL && !packer.isEnabled()) {
+                try {
+                    install(newContainer(rule, version, verified, options));
+                    return;
+                } catch (RuntimeException e) {
+                    log.warn("- install verified rule error, recompile: {}", id, e);
+                }
+            }
+            verified.dispose();
         }
 
-        //清理name
-        CACHE_NAME.remove(rule.getName());
+        CompletableFuture.supplyAsync(() -> compile(rule, version), compileExecutor)
+                .whenComplete((container, e) -> {
+                    if (e == null) {
+                        install(container);
+                        return;
+                    }
+
+                    //编译失败时丢弃旧版本，下次请求重新加载并暴露错误
+                    log.error("- compile rule error: {}", id, e);
+                    cacheId.synchronous().invalidate(id);
+                });
+    }
+
+
+    /**
+     * 安装新版本容器，比当前缓存版本旧或在版本号分配后规则已被卸载则直接丢弃
+     *
+     * @param container 新容器
+     */
+    private void install(RuleContainer container) {
+        Long id = container.getId();
+        CompletableFuture<RuleContainer> next = CompletableFuture.completedFuture(container);
+        ConcurrentMap<Long, CompletableFuture<RuleContainer>> map = cacheId.asMap();
+
+        while (true) {
+            if (isUninstalled(container)) {
+                container.retire();
+                return;
+            }
+
+            CompletableFuture<RuleContainer> current = map.get(id);
+
+            if (current == null) {
+                if (map.putIfAbsent(id, next) == null) {
+                    break;
+                }
+                continue;
+            }
+
+            RuleContainer old = current.isDone() && !current.isCompletedExceptionally() ? current.join() : null;
+            if (old != null && old.getVersion() > container.getVersion()) {
+                container.retire();
+                return;
+            }
+
+            //被替换的旧版本由removalListener下线
+            if (map.replace(id, current, next)) {
+                break;
+            }
+        }
+
+        //检查后与写入前之间被卸载，撤回本次写入，由removalListener下线
+        if (isUninstalled(container)) {
+            map.remove(id, next);
+            return;
+        }
+
+        //旧版本的结果不会再命中，提前释放；并发隔离按新版本的配置重建
+        resultCache.invalidate(id);
+        bulkheads.invalidate(id);
+        log.info("- install rule container: {}", container);
+    }
+
+
+    private boolean isUninstalled(RuleContainer container) {
+        Long version = uninstalled.getIfPresent(container.getId());
+        return version != null && version > container.getVersion();
+    }
+
+
+    /**
+     * 编译规则，规则未变化时优先使用编译产物缓存
+     *
+     * @param rule      规则
+     * @param version   版本号
+     * @return          规则容器
+     */
+    private RuleContainer compile(Rule rule, long version) {
+        RuleOptions options = properties.getOptions(rule.getName());
+
+        if (options.getCompileMode() == CompileMode.EXECUTABLE_MODEL) {
+            RuleContainer container = compileExecutableModel(rule, version, options);
+            if (container != null) {
+                metrics.recordFootprint(container);
+                return container;
+            }
+        } else if (packer.isEnabled()) {
+            RuleContainer container = pack(rule, version);
+            if (container != null) {
+                metrics.recordFootprint(container);
+                return container;
+            }
+        }
+
+        long start = System.nanoTime();
+        KieBase kieBase = artifactStore.load(rule);
+
+        if (kieBase != null) {
+            metrics.recordCompile(rule.getName(), RuleMetrics.SOURCE_ARTIFACT, System.nanoTime() - start, RuleMetrics.SUCCESS);
+
+            RuleContainer container = new RuleContainer(rule, version, kieBase, null,
+                    options,
+                    resolveGlobals(kieBase.getKiePackages()),
+                    resolveFactBindings(kieBase.getKiePackages()));
+
+            metrics.recordFootprint(container);
+            return container;
+        }
+
+        start = System.nanoTime();
+        KieContainer kieContainer;
+        try {
+            kieContainer = compiler.compileDrl(rule.getRuleText());
+        } catch (RuntimeException e) {
+            metrics.recordCompile(rule.getName(), RuleMetrics.SOURCE_DRL, System.nanoTime() - start, RuleMetrics.ERROR);
+            throw e;
+        }
+
+        metrics.recordCompile(rule.getName(), RuleMetrics.SOURCE_DRL, System.nanoTime() - start, RuleMetrics.SUCCESS);
+        return newContainer(rule, version, kieContainer, options);
+    }
+
+
+    /**
+     * 由DRL编译结果创建规则容器，同时写入编译产物缓存
+     *
+     * @param rule          规则
+     * @param version       版本号
+     * @param kieContainer  编译结果
+     * @param options       规则配置
+     * @return              规则容器
+     */
+    private RuleContainer newContainer(Rule rule, long version, KieContainer kieContainer, RuleOptions options) {
+        KieBase kieBase = kieContainer.getKieBase();
+        artifactStore.save(rule, kieBase);
+
+        RuleContainer container = new RuleContainer(rule, version, kieBase, kieContainer,
+                options,
+                resolveGlobals(kieBase.getKiePackages()),
+                resolveFactBindings(kieBase.getKiePackages()));
+
+        metrics.recordFootprint(container);
+        return container;
+    }
+
+
+    /**
+     * 可执行模型编译，不使用编译产物缓存和打包模式
+     *
+     * @param rule      规则
+     * @param version   版本号
+     * @param options   规则配置
+     * @return          规则容器，不支持可执行模型时返回null，由调用方退回DRL编译
+     */
+    private RuleContainer compileExecutableModel(Rule rule, long version, RuleOptions options) {
+        long start = System.nanoTime();
+        KieContainer kieContainer;
+
+        try {
+            kieContainer = compiler.compileExecutableModel(rule, version);
+        } catch (RuntimeException e) {
+            log.warn("- executable model compile error: {}, fallback to drl", rule.getId(), e);
+            kieContainer = null;
+        }
+
+        if (kieContainer == null) {
+            metrics.recordCompile(rule.getName(), RuleMetrics.SOURCE_EXECUTABLE_MODEL, System.nanoTime() - start, RuleMetrics.ERROR);
+            return null;
+        }
+
+        metrics.recordCompile(rule.getName(), RuleMetrics.SOURCE_EXECUTABLE_MODEL, System.nanoTime() - start, RuleMetrics.SUCCESS);
+
+        KieBase kieBase = kieContainer.getKieBase();
+        return new RuleContainer(rule, version, kieBase, kieContainer,
+                options,
+                resolveGlobals(kieBase.getKiePackages()),
+                resolveFactBindings(kieBase.getKiePackages()));
+    }
+
+
+    /**
+     * 打包模式编译，规则编译为独立的包加入共享KieBase
+     *
+     * @param rule      规则
+     * @param version   版本号
+     * @return          规则容器，规则无法打包或打包出错时返回null，由调用方独立编译
+     */
+    private RuleContainer pack(Rule rule, long version) {
+        long start = System.nanoTime();
+        RulePacker.Packed packed;
+
+        try {
+            packed = packer.pack(rule, version);
+        } catch (RuntimeException e) {
+            log.warn("- pack rule error: {}, compile standalone", rule.getId(), e);
+            metrics.recordCompile(rule.getName(), RuleMetrics.SOURCE_PACKED, System.nanoTime() - start, RuleMetrics.ERROR);
+            return null;
+        }
+
+        if (packed == null) {
+            return null;
+        }
+
+        metrics.recordCompile(rule.getName(), RuleMetrics.SOURCE_PACKED, System.nanoTime() - start, RuleMetrics.SUCCESS);
+
+        List<KiePackage> packages = Collections.singletonList(packed.getKiePackage());
+        return new RuleContainer(rule, version, packed.getGroup().getKieBase(), null,
+                properties.getOptions(rule.getName()),
+                resolveGlobals(packages),
+                resolveFactBindings(packages),
+                packed.getGroup(),
+                packed.getPackageName());
     }
 
 
     /**
      * 根据id获取container
+     * 已加载的规则直接返回，不同规则的编译互不阻塞
      *
      * @param id    id
      * @return      容器
      */
-    private KieContainer getContainerById(Long id) {
-        KieContainer container = CACHE_ID.get(id);
+    private RuleContainer getContainerById(Long id) {
+        return getOrLoad(cacheId, id, this::loadContainer);
+    }
 
-        if (container != null) {
-            return container;
+
+    /**
+     * 加载规则容器
+     *
+     * @param id    id
+     * @return      规则容器
+     */
+    private RuleContainer loadContainer(Long id) {
+        long version = versions.incrementAndGet();
+        Rule rule = getRuleById(id);
+        return compile(rule, version);
+    }
+
+
+    /**
+     * 从缓存获取，未命中时由抢到加载权的线程负责加载，其余线程等待同一个future
+     * 加载失败不缓存，下次请求重新加载
+     *
+     * @param cache     缓存
+     * @param key       key
+     * @param loader    加载方法
+     * @param <K>       key类型
+     * @param <V>       value类型
+     * @return          value
+     */
+    private static <K, V> V getOrLoad(AsyncCache<K, V> cache, K key, Function<K, V> loader) {
+        CompletableFuture<V> future = cache.getIfPresent(key);
+
+        if (future == null) {
+            CompletableFuture<V> loading = new CompletableFuture<>();
+            future = cache.asMap().putIfAbsent(key, loading);
+
+            if (future == null) {
+                future = loading;
+                try {
+                    loading.complete(loader.apply(key));
+                } catch (RuntimeException | Error e) {
+                    cache.asMap().remove(key, loading);
+                    loading.completeExceptionally(e);
+                }
+            }
         }
 
-        synchronized (CACHE_ID) {
-            String rule = getRuleById(id);
-            return CACHE_ID.computeIfAbsent(id, k -> new KieHelper().addContent(rule, DRL).getKieContainer());
+        return join(future);
+    }
+
+
+    /**
+     * 等待future完成，并还原原始异常
+     *
+     * @param future    future
+     * @param <T>       类型
+     * @return          结果
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
         }
     }
 
@@ -252,11 +1065,74 @@ public class RuleService {
      * @param id    id
      * @return      规则
      */
-    private String getRuleById(Long id) {
+    private Rule getRuleById(Long id) {
+        Assert.isNull(missingId.getIfPresent(id), RULE_NULL_ERROR);
+
         Optional<Rule> rule = ruleDao.findById(id);
+        if (!rule.isPresent()) {
+            missingId.put(id, Boolean.TRUE);
+        }
 
         Assert.isTrue(rule.isPresent(), RULE_NULL_ERROR);
-        return rule.get().getRuleText();
+        return rule.get();
+    }
+
+
+    /**
+     * 复制规则，避免后台编译时被调用方修改
+     *
+     * @param rule  规则
+     * @return      副本
+     */
+    private static Rule copyOf(Rule rule) {
+        Rule copy = new Rule();
+        BeanUtils.copyProperties(rule, copy);
+        return copy;
+    }
+
+
+    /**
+     * 在当前事务提交后执行，没有事务时立即执行
+     *
+     * @param action 动作
+     */
+    private static void afterCommit(Runnable action) {
+        afterCommit(action, null);
+    }
+
+
+    /**
+     * 在当前事务提交后执行，回滚或提交失败时执行另一动作；没有事务时立即执行
+     *
+     * @param action    提交后的动作
+     * @param rollback  未提交时的动作，可为空
+     */
+    private static void afterCommit(Runnable action, Runnable rollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED && rollback != null) {
+                    rollback.run();
+                }
+            }
+        });
+    }
+
+
+    private static void dispose(KieContainer kieContainer) {
+        if (kieContainer != null) {
+            kieContainer.dispose();
+        }
     }
 
 
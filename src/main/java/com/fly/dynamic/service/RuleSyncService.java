@@ -0,0 +1,152 @@
+package com.fly.dynamic.service;
+
+import com.fly.dynamic.config.DynamicRuleProperties;
+import com.fly.dynamic.dao.RuleDao;
+import com.fly.dynamic.entity.Rule;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群缓存同步，定时按更新时间轮询规则表，
+ * 发现其他节点修改或删除了本地已加载的规则时，异步重新编译或卸载
+ * <p>
+ * 修改通过update_time索引查询，只取id、名称和更新时间，每个规则的同一更新时间只读取一次全文比较；
+ * 删除按较长的间隔，通过主键分批确认已加载的规则是否仍存在
+ *
+ * @author guoxiang
+ * @version 1.0.0
+ * @since 2021/8/4
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RuleSyncService {
+
+    private final RuleService ruleService;
+    private final RuleDao ruleDao;
+    private final DynamicRuleProperties properties;
+
+    /**
+     * 每批确认存在的id数量
+     */
+    private static final int PROBE_SIZE = 500;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 已同步到的最大更新时间
+     */
+    private LocalDateTime watermark;
+
+    /**
+     * 已处理过的规则更新时间，重叠窗口内重复查到时不再读取全文
+     */
+    private final Map<Long, LocalDateTime> handled = new HashMap<>();
+
+    /**
+     * 下次确认删除的时间
+     */
+    private long nextProbe;
+
+
+    /**
+     * 启动同步任务
+     */
+    @EventListener(classes = ApplicationReadyEvent.class)
+    public void start() {
+        DynamicRuleProperties.Sync sync = properties.getSync();
+        if (!sync.isEnabled() || scheduler != null) {
+            return;
+        }
+
+        watermark = LocalDateTime.now().withNano(0);
+        nextProbe = System.nanoTime() + sync.getProbeInterval().toNanos();
+        long interval = sync.getInterval().toMillis();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("rule-sync-"));
+        scheduler.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("规则集群同步已启动，轮询间隔{}ms", interval);
+    }
+
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+
+    /**
+     * 查询水位线之后变化的规则，到达确认间隔时再确认已加载的规则是否仍存在
+     */
+    void poll() {
+        try {
+            DynamicRuleProperties.Sync sync = properties.getSync();
+            LocalDateTime now = LocalDateTime.now().withNano(0);
+            LocalDateTime since = watermark.minus(sync.getOverlap());
+            LocalDateTime max = watermark;
+
+            handled.values().removeIf(time -> time.isBefore(since));
+
+            for (Rule row : ruleDao.findChanged(since)) {
+                LocalDateTime updateTime = row.getUpdateTime();
+                if (updateTime != null && updateTime.isAfter(max)) {
+                    max = updateTime;
+                }
+                if (updateTime != null && updateTime.equals(handled.get(row.getId()))) {
+                    continue;
+                }
+
+                ruleService.onRemoteChange(row);
+
+                //更新时间只精确到秒，当前这一秒内还可能再次修改，过了这一秒才记为已处理
+                if (updateTime != null && updateTime.isBefore(now)) {
+                    handled.put(row.getId(), updateTime);
+                }
+            }
+
+            long tick = System.nanoTime();
+            if (tick - nextProbe >= 0) {
+                probeDeleted(ruleService.getLoadedContainers().keySet());
+                nextProbe = tick + sync.getProbeInterval().toNanos();
+            }
+
+            watermark = max;
+        } catch (Exception e) {
+            log.warn("- rule sync error: {}", e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * 按主键分批确认，已加载但数据库中不存在的规则已被删除
+     *
+     * @param loaded    已加载的规则id
+     */
+    private void probeDeleted(Collection<Long> loaded) {
+        List<Long> ids = new ArrayList<>(loaded);
+
+        for (int from = 0; from < ids.size(); from += PROBE_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + PROBE_SIZE, ids.size()));
+            Set<Long> existing = new HashSet<>(ruleDao.findExistingIds(chunk));
+
+            for (Long id : chunk) {
+                if (!existing.contains(id)) {
+                    ruleService.onRemoteDelete(id);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.fly.dynamic.common;
+
+import com.fly.dynamic.entity.RuleResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author guoxiang
+ */
+class RuleErrorHandlerTest {
+
+    private final RuleErrorHandler handler = new RuleErrorHandler();
+
+
+    @Test
+    void wrappedExceptionMatchesSync() {
+        IllegalArgumentException e = new IllegalArgumentException(RuleErrorMessage.RULE_NULL_ERROR);
+
+        RuleResult sync = handler.handleException(e);
+        RuleResult async = handler.handleWrapped(new CompletionException(new ExecutionException(e)));
+
+        assertEquals(sync, async);
+    }
+
+
+    @Test
+    void wrappedRejectionMatchesSync() {
+        RejectedExecutionException e = new RejectedExecutionException("full");
+
+        RuleResult sync = handler.handleRejected(e);
+        RuleResult async = handler.handleWrapped(new CompletionException(e));
+
+        assertEquals(sync, async);
+        assertEquals(RuleResult.REJECTED, async.getCode());
+    }
+}
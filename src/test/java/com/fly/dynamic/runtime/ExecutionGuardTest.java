@@ -0,0 +1,91 @@
+package com.fly.dynamic.runtime;
+
+import com.fly.dynamic.service.RuleCompiler;
+import org.junit.jupiter.api.Test;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.RuleRuntime;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author guoxiang
+ */
+class ExecutionGuardTest {
+
+    private static final String COUNTDOWN = "package rule_guard;\n" +
+            "global java.util.concurrent.atomic.AtomicInteger counter;\n" +
+            "rule \"countdown\"\n" +
+            "when\n" +
+            "    $n : Integer(intValue > 0)\n" +
+            "then\n" +
+            "    counter.incrementAndGet();\n" +
+            "    delete($n);\n" +
+            "    insert($n - 1);\n" +
+            "end\n";
+
+    private final RuleCompiler compiler = new RuleCompiler();
+
+
+    @Test
+    void exactlyMaxFiresIsNotLimited() {
+        ExecutionGuard guard = new ExecutionGuard(0, 5);
+        assertEquals(5, fire(5, guard));
+        assertFalse(guard.isLimited());
+    }
+
+
+    @Test
+    void moreThanMaxFiresIsLimited() {
+        ExecutionGuard guard = new ExecutionGuard(0, 5);
+        assertEquals(6, fire(100, guard));
+        assertTrue(guard.isLimited());
+        assertFalse(guard.isTimedOut());
+    }
+
+
+    @Test
+    void lateWatchdogDoesNotHalt() {
+        ExecutionGuard guard = new ExecutionGuard(1_000_000_000L, 0);
+        RuleRuntime runtime = mock(RuleRuntime.class);
+
+        guard.finish();
+        guard.expire(runtime);
+
+        verify(runtime, never()).halt();
+        assertFalse(guard.isTimedOut());
+    }
+
+
+    @Test
+    void watchdogHaltsOnlyOnce() {
+        ExecutionGuard guard = new ExecutionGuard(1_000_000_000L, 0);
+        RuleRuntime runtime = mock(RuleRuntime.class);
+
+        guard.expire(runtime);
+        guard.expire(runtime);
+        guard.finish();
+
+        verify(runtime, times(1)).halt();
+        assertTrue(guard.isTimedOut());
+    }
+
+
+    private int fire(int start, ExecutionGuard guard) {
+        KieContainer kieContainer = compiler.compileDrl(COUNTDOWN);
+        KieSession session = kieContainer.newKieSession();
+        try {
+            session.setGlobal("counter", new AtomicInteger());
+            session.addEventListener(guard);
+            session.insert(start);
+            return session.fireAllRules();
+        } finally {
+            guard.finish();
+            session.dispose();
+            kieContainer.dispose();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.fly.dynamic.runtime;
+
+import com.fly.dynamic.config.RuleOptions;
+import com.fly.dynamic.entity.Rule;
+import com.fly.dynamic.service.RuleCompiler;
+import org.junit.jupiter.api.Test;
+import org.kie.api.runtime.KieContainer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author guoxiang
+ */
+class RuleContainerTest {
+
+    private static final String DRL = "package rule_container;\n" +
+            "rule \"noop\"\n" +
+            "when\n" +
+            "    String()\n" +
+            "then\n" +
+            "end\n";
+
+    private final RuleCompiler compiler = new RuleCompiler();
+
+
+    @Test
+    void retireWaitsForInFlight() {
+        KieContainer kieContainer = spy(compiler.compileDrl(DRL));
+        RuleContainer container = newContainer(kieContainer);
+
+        assertTrue(container.tryAcquire());
+        container.retire();
+
+        assertFalse(container.isDisposed());
+        assertFalse(container.tryAcquire());
+
+        container.release();
+        assertTrue(container.isDisposed());
+        verify(kieContainer, times(1)).dispose();
+    }
+
+
+    @Test
+    void concurrentAcquireAndRetireDisposesOnce() throws Exception {
+        KieContainer kieContainer = spy(compiler.compileDrl(DRL));
+        RuleContainer container = newContainer(kieContainer);
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch started = new CountDownLatch(threads);
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger disposedWhileAcquired = new AtomicInteger();
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    while (!stop.get()) {
+                        if (!container.tryAcquire()) {
+                            continue;
+                        }
+                        try {
+                            if (container.isDisposed()) {
+                                disposedWhileAcquired.incrementAndGet();
+                            }
+                            container.newKieSession().dispose();
+                        } finally {
+                            container.release();
+                        }
+                    }
+                }));
+            }
+
+            started.await();
+            TimeUnit.MILLISECONDS.sleep(100);
+            container.retire();
+
+            //下线后不再接受新请求
+            assertFalse(container.tryAcquire());
+            TimeUnit.MILLISECONDS.sleep(100);
+
+            stop.set(true);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, disposedWhileAcquired.get());
+        assertEquals(0, container.getInFlight());
+        assertTrue(container.isDisposed());
+        verify(kieContainer, times(1)).dispose();
+    }
+
+
+    private static RuleContainer newContainer(KieContainer kieContainer) {
+        Rule rule = new Rule();
+        rule.setId(1L);
+        rule.setName("rule_container");
+        rule.setRuleText(DRL);
+
+        return new RuleContainer(rule, 1, kieContainer.getKieBase(), kieContainer,
+                RuleOptions.defaults(), Collections.emptyMap(), Collections.emptyList());
+    }
+}
@@ -0,0 +1,120 @@
+package com.fly.dynamic.service;
+
+import org.junit.jupiter.api.Test;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.KieContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author guoxiang
+ */
+class RuleCompilerTest {
+
+    private static final int RULES = 200;
+
+    private final RuleCompiler compiler = new RuleCompiler();
+
+
+    @Test
+    void concurrentCompileKeepsOwnPackage() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < RULES; i++) {
+                String packageName = "rule_compile_" + i;
+                futures.add(executor.submit(() -> {
+                    KieContainer kieContainer = compiler.compileDrl(drl(packageName));
+                    try {
+                        return hasPackage(kieContainer.getKieBase(), packageName);
+                    } finally {
+                        kieContainer.dispose();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < RULES; i++) {
+                if (!futures.get(i).get()) {
+                    throw new AssertionError("kieBase without own package: rule_compile_" + i);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    void concurrentVerifyKeepsOwnPackage() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < RULES; i++) {
+                String packageName = "rule_verify_" + i;
+                futures.add(executor.submit(() -> {
+                    KieContainer kieContainer = compiler.verify(drl(packageName));
+                    try {
+                        return hasPackage(kieContainer.getKieBase(), packageName);
+                    } finally {
+                        kieContainer.dispose();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < RULES; i++) {
+                if (!futures.get(i).get()) {
+                    throw new AssertionError("kieBase without own package: rule_verify_" + i);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    void verifyErrorThrows() {
+        assertThrows(IllegalArgumentException.class, () -> compiler.verify("rule \"broken\" when then"));
+    }
+
+
+    @Test
+    void compileErrorThrows() {
+        assertThrows(IllegalArgumentException.class, () -> compiler.compileDrl("rule \"broken\" when then"));
+    }
+
+
+    @Test
+    void compiledContainerCreatesSessionPool() {
+        KieContainer kieContainer = compiler.compileDrl(drl("rule_pool"));
+        try {
+            assertNotNull(kieContainer.newKieSessionsPool(1).newKieSession());
+        } finally {
+            kieContainer.dispose();
+        }
+    }
+
+
+    static String drl(String packageName) {
+        return "package " + packageName + ";\n" +
+                "rule \"r\"\n" +
+                "when\n" +
+                "    $m : java.util.Map()\n" +
+                "then\n" +
+                "    $m.put(\"package\", \"" + packageName + "\");\n" +
+                "end\n";
+    }
+
+
+    static boolean hasPackage(KieBase kieBase, String packageName) {
+        return kieBase.getKiePackage(packageName) != null
+                && !kieBase.getKiePackage(packageName).getRules().isEmpty();
+    }
+}
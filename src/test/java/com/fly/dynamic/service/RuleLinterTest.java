@@ -0,0 +1,125 @@
+package com.fly.dynamic.service;
+
+import com.fly.dynamic.config.DynamicRuleProperties;
+import com.fly.dynamic.dto.RuleLintDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author guoxiang
+ */
+class RuleLinterTest {
+
+    private static final String HEADER = "package com.fly.rule.lint\n\n" +
+            "import com.fly.dynamic.entity.RuleResult\n\n" +
+            "declare Order\n" +
+            "    amount : Double\n" +
+            "end\n\n";
+
+    private final DynamicRuleProperties properties = new DynamicRuleProperties();
+
+    private final RuleLinter linter = new RuleLinter(properties);
+
+
+    @ParameterizedTest
+    @ValueSource(strings = {"small", "medium"})
+    void bundledRulesLintClean(String size) throws Exception {
+        String drl = StreamUtils.copyToString(new ClassPathResource("drl/" + size + ".drl").getInputStream(), StandardCharsets.UTF_8);
+
+        RuleLintDto report = linter.lint(drl);
+
+        assertEquals(0, report.getScore(), RuleLinter.describe(report));
+        assertEquals(0, report.getCrossProducts());
+        assertTrue(report.getNodes() > 0);
+
+        properties.getLint().setStrict(true);
+        assertNotNull(linter.check(drl));
+    }
+
+
+    @Test
+    void crossProduct() {
+        RuleLintDto report = linter.lint(HEADER +
+                "rule \"pairs\"\n" +
+                "when\n" +
+                "    $a : Item()\n" +
+                "    $b : Item()\n" +
+                "    $result : RuleResult()\n" +
+                "then\n" +
+                "end\n" +
+                "declare Item\n" +
+                "    price : Double\n" +
+                "end\n");
+
+        assertEquals(0, report.getCrossProducts(), "declared types are filled once per call");
+
+        report = linter.lint(HEADER +
+                "import java.math.BigDecimal\n" +
+                "rule \"pairs\"\n" +
+                "when\n" +
+                "    $a : BigDecimal()\n" +
+                "    $b : BigDecimal()\n" +
+                "    $c : BigDecimal(this > $a)\n" +
+                "then\n" +
+                "end\n");
+
+        assertEquals(1, report.getCrossProducts());
+        assertEquals("CROSS_PRODUCT", report.getWarnings().get(0).getType());
+    }
+
+
+    @Test
+    void evalAndFromCall() {
+        RuleLintDto report = linter.lint(HEADER +
+                "rule \"slow\"\n" +
+                "when\n" +
+                "    $order : Order()\n" +
+                "    eval($order.getAmount() > 10)\n" +
+                "    $row : java.util.Map() from jdbcTemplate.queryForList(\"select 1\")\n" +
+                "then\n" +
+                "end\n");
+
+        assertTrue(report.getWarnings().stream().anyMatch(w -> "EVAL".equals(w.getType())));
+        assertTrue(report.getWarnings().stream().anyMatch(w -> "FROM_CALL".equals(w.getType())));
+    }
+
+
+    @Test
+    void selfModifyWithoutNoLoop() {
+        String loop = HEADER +
+                "rule \"loop\"\n" +
+                "%s" +
+                "when\n" +
+                "    $order : Order()\n" +
+                "then\n" +
+                "    modify($order) { setAmount(1.0) }\n" +
+                "end\n";
+
+        RuleLintDto report = linter.lint(String.format(loop, ""));
+        assertEquals("NO_LOOP", report.getWarnings().get(0).getType());
+
+        assertTrue(linter.lint(String.format(loop, "no-loop\n")).getWarnings().isEmpty());
+    }
+
+
+    @Test
+    void strictModeRejects() {
+        properties.getLint().setStrict(true);
+        properties.getLint().setMaxScore(2);
+
+        assertThrows(IllegalArgumentException.class, () -> linter.check(HEADER +
+                "rule \"slow\"\n" +
+                "when\n" +
+                "    $order : Order()\n" +
+                "    eval($order.getAmount() > 10)\n" +
+                "then\n" +
+                "end\n"));
+    }
+}
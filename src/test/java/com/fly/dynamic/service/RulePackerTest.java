@@ -0,0 +1,58 @@
+package com.fly.dynamic.service;
+
+import com.fly.dynamic.config.DynamicRuleProperties;
+import com.fly.dynamic.entity.Rule;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author guoxiang
+ */
+class RulePackerTest {
+
+    private final RulePacker packer = new RulePacker(new DynamicRuleProperties());
+
+
+    @Test
+    void packsIndependentRule() {
+        RulePacker.Packed packed = packer.pack(rule(1L, "package rule_pack;\n" +
+                "rule \"noop\"\n" +
+                "when\n" +
+                "    String()\n" +
+                "then\n" +
+                "end\n"), 1);
+
+        assertNotNull(packed);
+        assertEquals("rule_1_1", packed.getPackageName());
+    }
+
+
+    @Test
+    void syntaxErrorFallsBackToStandalone() {
+        assertNull(packer.pack(rule(2L, "rule \"broken\" when then"), 1));
+    }
+
+
+    @Test
+    void builderErrorAfterRenameFallsBackToStandalone() {
+        //类型按原包名引用，包名改写后找不到
+        assertNull(packer.pack(rule(3L, "package rule_pack;\n" +
+                "declare Item\n" +
+                "    price : int\n" +
+                "end\n" +
+                "rule \"qualified\"\n" +
+                "when\n" +
+                "    rule_pack.Item(price > 0)\n" +
+                "then\n" +
+                "end\n"), 1));
+    }
+
+
+    private static Rule rule(Long id, String ruleText) {
+        Rule rule = new Rule();
+        rule.setId(id);
+        rule.setRuleText(ruleText);
+        return rule;
+    }
+}
@@ -0,0 +1,63 @@
+package com.fly.dynamic.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fly.dynamic.common.RuleMetrics;
+import com.fly.dynamic.config.DynamicRuleProperties;
+import com.fly.dynamic.entity.RuleResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author guoxiang
+ */
+class RuleResultCacheTest {
+
+    private final RuleResultCache cache = new RuleResultCache(new DynamicRuleProperties(), new ObjectMapper(),
+            new RuleMetrics(new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class)));
+
+    private final RuleResultCache.Key key = new RuleResultCache.Key(1L, 1, "{}");
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void cachedDataIsIsolatedFromCallers() {
+        List<Object> items = new ArrayList<>();
+        items.add("a");
+        Map<String, Object> data = new HashMap<>();
+        data.put("items", items);
+
+        cache.put(key, new RuleResult().setCode(0).setData(data));
+
+        //写入后修改原对象不影响缓存
+        items.add("b");
+        data.put("extra", true);
+
+        Map<String, Object> first = (Map<String, Object>) cache.get(key).getData();
+        assertEquals(1, ((List<Object>) first.get("items")).size());
+        assertFalse(first.containsKey("extra"));
+
+        //修改取到的结果不影响下一次命中
+        ((List<Object>) first.get("items")).add("c");
+        first.put("extra", true);
+
+        Map<String, Object> second = (Map<String, Object>) cache.get(key).getData();
+        assertNotSame(first, second);
+        assertEquals(1, ((List<Object>) second.get("items")).size());
+        assertFalse(second.containsKey("extra"));
+    }
+
+
+    @Test
+    void failedResultIsNotCached() {
+        cache.put(key, new RuleResult().setCode(1).setData("error"));
+        assertNull(cache.get(key));
+    }
+}
@@ -0,0 +1,237 @@
+package com.fly.dynamic.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fly.dynamic.common.RuleMetrics;
+import com.fly.dynamic.config.DynamicRuleProperties;
+import com.fly.dynamic.dao.RuleDao;
+import com.fly.dynamic.entity.Rule;
+import com.fly.dynamic.runtime.RuleContainer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * 规则容器替换和卸载的并发场景
+ *
+ * @author guoxiang
+ */
+class RuleServiceTest {
+
+    private static final long ID = 1L;
+
+    private final Map<Long, Rule> rows = new ConcurrentHashMap<>();
+
+    private final GatedCompiler compiler = new GatedCompiler();
+
+    private RuleService ruleService;
+
+
+    @BeforeEach
+    void setUp() {
+        RuleDao ruleDao = mock(RuleDao.class);
+        when(ruleDao.exist(any(), any())).thenReturn(false);
+        when(ruleDao.findById(anyLong())).thenAnswer(invocation ->
+                Optional.ofNullable(rows.get(invocation.<Long>getArgument(0))).map(RuleServiceTest::copy));
+        when(ruleDao.save(any())).thenAnswer(invocation -> {
+            Rule rule = invocation.getArgument(0);
+            rows.put(rule.getId(), copy(rule));
+            return rule.getId();
+        });
+        doAnswer(invocation -> rows.remove(invocation.<Long>getArgument(0)))
+                .when(ruleDao).deleteById(anyLong());
+
+        DynamicRuleProperties properties = new DynamicRuleProperties();
+        ObjectMapper objectMapper = new ObjectMapper();
+        RuleMetrics metrics = new RuleMetrics(new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+
+        ruleService = new RuleService(mock(ApplicationContext.class),
+                ruleDao,
+                mock(JdbcTemplate.class),
+                properties,
+                objectMapper,
+                new RuleArtifactStore(properties),
+                metrics,
+                new RuleProfiler(properties),
+                new RuleResultCache(properties, objectMapper, metrics),
+                new RulePacker(properties),
+                compiler,
+                new RuleBulkheadRegistry(metrics));
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        compiler.open();
+        ruleService.destroy();
+    }
+
+
+    @Test
+    void swapKeepsInFlightContainerUntilReleased() throws Exception {
+        rows.put(ID, rule("rule_v1"));
+
+        RuleContainer v1 = ruleService.acquireById(ID);
+        ruleService.save(rule("rule_v2"));
+
+        await(() -> loaded() != null && loaded() != v1);
+
+        //替换后在途请求仍可使用旧版本
+        KieSession session = ruleService.newSession(v1);
+        session.fireAllRules();
+        session.dispose();
+        assertFalse(v1.isDisposed());
+
+        v1.release();
+        await(v1::isDisposed);
+
+        RuleContainer v2 = ruleService.acquireById(ID);
+        try {
+            assertNotNull(v2.getKieBase().getKiePackage("rule_v2"));
+        } finally {
+            v2.release();
+        }
+    }
+
+
+    @Test
+    void uninstallDuringCompileIsNotReinstalled() throws Exception {
+        rows.put(ID, rule("rule_v1"));
+        ruleService.acquireById(ID).release();
+
+        compiler.close();
+        ruleService.save(rule("rule_v2"));
+        assertTrue(compiler.entered.await(10, TimeUnit.SECONDS));
+
+        ruleService.delete(ID);
+        assertNull(loaded());
+
+        compiler.open();
+
+        //后台编译完成后发现已卸载，新版本直接下线
+        KieContainer compiled = compiler.last.poll(10, TimeUnit.SECONDS);
+        assertNotNull(compiled);
+        verify(compiled, timeout(10_000)).dispose();
+        assertNull(loaded());
+    }
+
+
+    @Test
+    void rollbackDisposesVerifiedBuild() {
+        KieContainer verified = spy(compiler.compileDrl(rule("rule_verified").getRuleText()));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            ruleService.save(rule("rule_verified"), verified);
+            verify(verified, never()).dispose();
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(verified, times(1)).dispose();
+        assertNull(loaded());
+    }
+
+
+    private RuleContainer loaded() {
+        return ruleService.getLoadedContainers().get(ID);
+    }
+
+
+    private static Rule rule(String packageName) {
+        Rule rule = new Rule();
+        rule.setId(ID);
+        rule.setName("rule_service");
+        rule.setRuleText("package " + packageName + ";\n" +
+                "rule \"noop\"\n" +
+                "when\n" +
+                "    String()\n" +
+                "then\n" +
+                "end\n");
+        return rule;
+    }
+
+
+    private static Rule copy(Rule rule) {
+        Rule copy = new Rule();
+        BeanUtils.copyProperties(rule, copy);
+        return copy;
+    }
+
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline >= 0) {
+                fail("condition not met in time");
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+
+    /**
+     * 关闭闸门时编译阻塞，用于在编译期间插入其他操作
+     */
+    private static class GatedCompiler extends RuleCompiler {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        private final BlockingQueue<KieContainer> last = new LinkedBlockingQueue<>();
+
+        private volatile CountDownLatch gate;
+
+        void close() {
+            gate = new CountDownLatch(1);
+        }
+
+        void open() {
+            CountDownLatch current = gate;
+            if (current != null) {
+                current.countDown();
+            }
+        }
+
+        @Override
+        public KieContainer compileDrl(String ruleText) {
+            CountDownLatch current = gate;
+            if (current == null) {
+                return super.compileDrl(ruleText);
+            }
+
+            entered.countDown();
+            try {
+                current.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+
+            KieContainer kieContainer = spy(super.compileDrl(ruleText));
+            last.add(kieContainer);
+            return kieContainer;
+        }
+    }
+}